@@ -0,0 +1,112 @@
+package com.example.stock.benchmark;
+
+import com.example.stock.StockApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/*
+    MySQL / Redis 없이 일반 리눅스 머신에서 돌 수 있도록 H2(MySQL mode) 와 embedded Redis 위에 애플리케이션을 띄운다.
+ */
+public class BenchmarkEnvironment implements AutoCloseable {
+
+    private static final int SEED_BATCH_SIZE = 10_000;
+
+    // 100만 건 이상도 빨리 넣을 수 있도록 JPA 대신 JDBC batch 로 넣는다. (entity listener 도 거치지 않는다)
+    private static final String INSERT_STOCK =
+            "insert into stock (product_id, quantity, reserved, fencing_token, version) values (?, ?, 0, 0, 0)";
+
+    private final RedisServer redisServer;
+
+    private final ConfigurableApplicationContext context;
+
+    private BenchmarkEnvironment(final RedisServer redisServer, final ConfigurableApplicationContext context) {
+        this.redisServer = redisServer;
+        this.context = context;
+    }
+
+    public static BenchmarkEnvironment start(final int connectionPoolSize) {
+        final int redisPort = findFreePort();
+        final RedisServer redisServer = new RedisServer(redisPort);
+        redisServer.start();
+
+        final ConfigurableApplicationContext context = new SpringApplicationBuilder(StockApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(applicationProperties("benchmark", redisPort, connectionPoolSize))
+                .run();
+        registerNamedLockFunctions(context.getBean(JdbcTemplate.class));
+
+        return new BenchmarkEnvironment(redisServer, context);
+    }
+
+    static String[] applicationProperties(final String databaseName, final int redisPort, final int connectionPoolSize) {
+        return new String[]{
+                "spring.datasource.driver-class-name=org.h2.Driver",
+                "spring.datasource.url=jdbc:h2:mem:" + databaseName + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                "spring.datasource.username=sa",
+                "spring.datasource.password=",
+                "spring.datasource.hikari.maximum-pool-size=" + connectionPoolSize,
+                "spring.jpa.show-sql=false",
+                // ProductLookupBenchmark 의 100만 개 상품이 모두 들어가도록 한다.
+                "stock.id-cache.maximum-size=2000000",
+                "spring.redis.host=127.0.0.1",
+                "spring.redis.port=" + redisPort,
+                "logging.level.root=WARN",
+                "logging.level.org.hibernate.SQL=WARN",
+                "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN"
+        };
+    }
+
+    static void registerNamedLockFunctions(final JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.execute("CREATE ALIAS IF NOT EXISTS GET_LOCK FOR '" + H2NamedLocks.class.getName() + ".getLock'");
+        jdbcTemplate.execute("CREATE ALIAS IF NOT EXISTS RELEASE_LOCK FOR '" + H2NamedLocks.class.getName() + ".releaseLock'");
+    }
+
+    public ConfigurableApplicationContext context() {
+        return context;
+    }
+
+    public void seed(final ProductSelector selector, final long quantity) {
+        seed(context, selector, quantity);
+    }
+
+    static void seed(final ApplicationContext context, final ProductSelector selector, final long quantity) {
+        final JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("delete from stock");
+
+        for (int from = 0; from < selector.size(); from += SEED_BATCH_SIZE) {
+            final List<Long> productIds = IntStream.range(from, Math.min(from + SEED_BATCH_SIZE, selector.size()))
+                    .mapToObj(selector::productIdAt)
+                    .collect(Collectors.toCollection(ArrayList::new));
+            jdbcTemplate.batchUpdate(INSERT_STOCK, productIds, productIds.size(), (statement, productId) -> {
+                statement.setLong(1, productId);
+                statement.setLong(2, quantity);
+            });
+        }
+    }
+
+    @Override
+    public void close() {
+        context.close();
+        redisServer.stop();
+    }
+
+    static int findFreePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
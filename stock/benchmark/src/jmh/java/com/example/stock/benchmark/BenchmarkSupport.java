@@ -0,0 +1,128 @@
+package com.example.stock.benchmark;
+
+import com.example.stock.repository.StockRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+    LoadScenarioRunner 와 ClusterSimulation 이 함께 쓰는 인자 해석, 지연 시간 / 정합성 요약, 결과 파일 저장.
+ */
+final class BenchmarkSupport {
+
+    // 정합성이 맞지 않는 상품은 이 개수까지만 결과에 남긴다.
+    private static final int MAX_REPORTED_MISMATCHES = 20;
+
+    private static final DateTimeFormatter FILE_TIMESTAMP =
+            DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneOffset.UTC);
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * key=value 인자를 순서대로 읽는다.
+     */
+    static Map<String, String> parseArguments(final String... args) {
+        final Map<String, String> values = new LinkedHashMap<>();
+        for (final String arg : args) {
+            final int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected key=value but was: " + arg);
+            }
+            values.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        return values;
+    }
+
+    static Map<String, Object> percentiles(final Histogram histogram) {
+        final Map<String, Object> percentiles = new LinkedHashMap<>();
+        percentiles.put("count", histogram.getTotalCount());
+        percentiles.put("p50", histogram.getValueAtPercentile(50));
+        percentiles.put("p99", histogram.getValueAtPercentile(99));
+        percentiles.put("p999", histogram.getValueAtPercentile(99.9));
+        percentiles.put("max", histogram.getMaxValue());
+        return percentiles;
+    }
+
+    /*
+        - oversell: 초기 수량보다 많이 팔렸거나 남은 수량이 음수
+        - mismatch: 남은 수량이 (초기 수량 - 성공한 감소 수량) 과 다름.
+                    unknown 이 있으면 결과를 받지 못한 요청이 커밋되었을 수도 있으므로 그만큼은 덜 남아 있어도 된다.
+        decreased, unknown 은 selector 의 rank 기준이다. unknown 이 없으면 null.
+     */
+    static Map<String, Object> checkConsistency(final ProductSelector selector,
+                                                final long initialQuantity,
+                                                final AtomicLongArray decreased,
+                                                final AtomicLongArray unknown,
+                                                final StockRepository stockRepository) {
+        final List<Map<String, Object>> mismatches = new ArrayList<>();
+        long mismatchCount = 0;
+        long oversold = 0;
+        long soldOutProducts = 0;
+
+        for (int rank = 0; rank < selector.size(); rank++) {
+            final long productId = selector.productIdAt(rank);
+            final long expected = initialQuantity - decreased.get(rank);
+            final long tolerance = unknown == null ? 0 : unknown.get(rank);
+            final Long actual = stockRepository.findAvailableQuantity(productId);
+
+            if (expected < 0 || (actual != null && actual < 0)) {
+                oversold++;
+            }
+            if (actual != null && actual == 0) {
+                soldOutProducts++;
+            }
+            if (actual == null || actual > expected || actual < expected - tolerance) {
+                mismatchCount++;
+                if (mismatches.size() < MAX_REPORTED_MISMATCHES) {
+                    final Map<String, Object> mismatch = new LinkedHashMap<>();
+                    mismatch.put("productId", productId);
+                    mismatch.put("expected", expected);
+                    if (unknown != null) {
+                        mismatch.put("unknown", tolerance);
+                    }
+                    mismatch.put("actual", actual);
+                    mismatches.add(mismatch);
+                }
+            }
+        }
+
+        final Map<String, Object> consistency = new LinkedHashMap<>();
+        consistency.put("passed", oversold == 0 && mismatchCount == 0);
+        consistency.put("checkedProducts", selector.size());
+        consistency.put("soldOutProducts", soldOutProducts);
+        consistency.put("oversoldProducts", oversold);
+        consistency.put("mismatchedProducts", mismatchCount);
+        consistency.put("mismatches", mismatches);
+        return consistency;
+    }
+
+    /**
+     * output 디렉터리에 "{name}-{UTC 시각}.json" 으로 저장하고, 결과와 파일 위치를 출력한다.
+     */
+    static Path write(final String output, final String name, final Map<String, Object> report) throws IOException {
+        final Path directory = Paths.get(output);
+        Files.createDirectories(directory);
+
+        final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        final Path file = directory.resolve(name + "-" + FILE_TIMESTAMP.format(Instant.now()) + ".json");
+        objectMapper.writeValue(file.toFile(), report);
+
+        System.out.println(objectMapper.writeValueAsString(report));
+        System.out.println("report: " + file.toAbsolutePath());
+        return file;
+    }
+}
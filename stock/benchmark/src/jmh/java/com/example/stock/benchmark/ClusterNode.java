@@ -0,0 +1,107 @@
+package com.example.stock.benchmark;
+
+import com.example.stock.StockApplication;
+import com.example.stock.repository.RedisRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+    클러스터 시뮬레이션의 서버 한 대.
+    같은 프로세스 안에서 독립된 Spring context 로 뜨므로 bean(로컬 lock, 캐시, Redis 연결, 커넥션 풀) 은 node 마다 따로 있고,
+    DB(H2, 같은 이름의 in-memory DB) 와 embedded Redis 만 다른 node 와 공유한다.
+ */
+class ClusterNode implements AutoCloseable {
+
+    private final int index;
+
+    private final ConfigurableApplicationContext context;
+
+    private volatile boolean alive = true;
+
+    private ClusterNode(final int index, final ConfigurableApplicationContext context) {
+        this.index = index;
+        this.context = context;
+    }
+
+    static ClusterNode start(final int index, final String databaseName, final int redisPort, final int connectionPoolSize) {
+        final List<String> properties = new ArrayList<>(Arrays.asList(
+                BenchmarkEnvironment.applicationProperties(databaseName, redisPort, connectionPoolSize)));
+        properties.add("spring.application.name=stock-node-" + index);
+        // schema 는 첫 번째 node 만 만든다. 뒤에 뜨는 node 가 create 로 뜨면 앞 node 가 쓰고 있는 테이블을 지워 버린다.
+        properties.add("spring.jpa.hibernate.ddl-auto=" + (index == 0 ? "create" : "none"));
+
+        final ConfigurableApplicationContext context = new SpringApplicationBuilder(StockApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(properties.toArray(new String[0]))
+                .run();
+        return new ClusterNode(index, context);
+    }
+
+    int index() {
+        return index;
+    }
+
+    ConfigurableApplicationContext context() {
+        return context;
+    }
+
+    boolean isAlive() {
+        return alive;
+    }
+
+    /**
+     * 가장 인기 있는 상품의 분산 lock 을 잡은 뒤 해제하지 않고 node 를 내린다.
+     * lease 를 연장하던 watchdog 도 함께 멈추므로 다른 node 는 lease 가 만료된 뒤에야 lock 을 가져갈 수 있다.
+     */
+    void killWhileHolding(final String strategy, final Long productId) throws InterruptedException {
+        switch (strategy) {
+            case "lettuce":
+                context.getBean(RedisRepository.class).lockAndWait(productId);
+                break;
+            case "redisson":
+                final RLock lock = context.getBean(RedissonClient.class).getLock(productId.toString());
+                // RedissonLockStockFacade 와 같은 leaseTime 으로 잡는다.
+                if (!lock.tryLock(30, 1, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("failed to acquire redisson lock. productId=" + productId);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("kill-holder is not supported for " + strategy);
+        }
+        kill();
+    }
+
+    /**
+     * 프로세스가 죽은 것처럼 내린다. context 를 닫으면 @PreDestroy (감소분 flush, lock 해제 등) 가 실행되므로
+     * shutdown hook 은 건너뛰고 스케줄러와 lock watchdog 을 멈춘 뒤 Redis / DB 연결만 끊는다.
+     * 처리 중이던 요청은 연결이 끊긴 시점에서 실패하고, 커밋되지 않은 트랜잭션은 DB 가 되돌린다.
+     */
+    void kill() {
+        alive = false;
+        context.getBeansOfType(ThreadPoolTaskScheduler.class).values().forEach(scheduler -> scheduler.getScheduledExecutor().shutdownNow());
+        context.getBean(RedisRepository.class).shutdown();
+        context.getBeansOfType(RedissonClient.class).values().forEach(RedissonClient::shutdown);
+        context.getBeansOfType(LettuceConnectionFactory.class).values().forEach(LettuceConnectionFactory::destroy);
+        context.getBeansOfType(HikariDataSource.class).values().forEach(HikariDataSource::close);
+    }
+
+    /**
+     * 측정이 끝난 뒤 남은 thread 와 bean 을 정리한다. 이미 kill 된 node 의 hook 은 끊긴 연결 때문에 실패하고 로그만 남긴다.
+     */
+    @Override
+    public void close() {
+        alive = false;
+        context.close();
+    }
+}
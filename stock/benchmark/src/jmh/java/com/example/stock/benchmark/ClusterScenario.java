@@ -0,0 +1,130 @@
+package com.example.stock.benchmark;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/*
+    클러스터 시뮬레이션 설정. 기본값에서 key=value 인자로 원하는 항목만 덮어쓴다.
+
+    - failure=none        : 장애 없이 node 수만 바꿔 가며 측정
+    - failure=kill-node   : 부하 도중 마지막 node 를 shutdown hook 없이 내린다.
+    - failure=kill-holder : 마지막 node 가 가장 인기 있는 상품의 분산 lock 을 잡은 채로 내려간다. (lettuce, redisson)
+ */
+public class ClusterScenario {
+
+    public static final List<String> FAILURES = Arrays.asList("none", "kill-node", "kill-holder");
+
+    // DB / Redis 를 통해서만 node 간 정합성을 맞추는 전략. synchronized, in-memory, ledger 는 JVM 안에서만 재고를 지키므로
+    // node 를 늘리면 초과 판매가 나는 것이 당연하고, 측정 결과가 분산 전략과 비교할 수 없다.
+    public static final List<String> STRATEGIES = Arrays.asList(
+            "pessimistic", "optimistic", "named", "lettuce", "redisson", "atomic-update", "coalescing", "redis-script");
+
+    // 소유자가 죽으면 lease 만료로 풀리는 lock 만 kill-holder 를 지원한다.
+    // H2NamedLocks 는 세션이 끊겨도 풀리지 않으므로 named 는 kill-node 까지만 의미가 있다.
+    private static final List<String> LEASE_STRATEGIES = Arrays.asList("lettuce", "redisson");
+
+    private final Map<String, String> values;
+
+    private ClusterScenario(final Map<String, String> values) {
+        this.values = values;
+    }
+
+    public static ClusterScenario parse(final String... args) {
+        final Map<String, String> values = defaults();
+        values.putAll(BenchmarkSupport.parseArguments(args));
+
+        final ClusterScenario scenario = new ClusterScenario(values);
+        scenario.validate();
+        return scenario;
+    }
+
+    private static Map<String, String> defaults() {
+        final Map<String, String> values = new LinkedHashMap<>();
+        values.put("strategy", "lettuce");
+        values.put("nodes", "1,2,4");
+        values.put("threadsPerNode", "16");
+        values.put("operations", "20000");
+        values.put("products", "10");
+        values.put("skew", "0.99");
+        // 상품 10개 x 1000개 < 20000 요청이므로 도중에 품절되어 초과 판매 여부까지 확인된다.
+        values.put("initialQuantity", "1000");
+        values.put("connectionPoolSize", "10");
+        values.put("failure", "none");
+        values.put("failAfterMillis", "500");
+        values.put("output", "build/results/cluster");
+        return values;
+    }
+
+    private void validate() {
+        if (!StockStrategies.NAMES.contains(strategy())) {
+            throw new IllegalArgumentException("Unknown stock strategy: " + strategy() + " (one of " + StockStrategies.NAMES + ")");
+        }
+        if (!STRATEGIES.contains(strategy())) {
+            throw new IllegalArgumentException(strategy() + " keeps stock only in one JVM and is not supported by the cluster simulation"
+                    + " (one of " + STRATEGIES + ")");
+        }
+        if (!FAILURES.contains(failure())) {
+            throw new IllegalArgumentException("Unknown failure: " + failure() + " (one of " + FAILURES + ")");
+        }
+        if ("kill-holder".equals(failure()) && !LEASE_STRATEGIES.contains(strategy())) {
+            throw new IllegalArgumentException("kill-holder is only supported for " + LEASE_STRATEGIES);
+        }
+    }
+
+    public String strategy() {
+        return values.get("strategy");
+    }
+
+    // 한 번의 실행에서 차례로 띄워 볼 node 수 목록
+    public List<Integer> nodes() {
+        return Arrays.stream(values.get("nodes").split(","))
+                .map(String::trim)
+                .map(Integer::parseInt)
+                .collect(Collectors.toList());
+    }
+
+    public int threadsPerNode() {
+        return Integer.parseInt(values.get("threadsPerNode"));
+    }
+
+    public long operations() {
+        return Long.parseLong(values.get("operations"));
+    }
+
+    public int products() {
+        return Integer.parseInt(values.get("products"));
+    }
+
+    public double skew() {
+        return Double.parseDouble(values.get("skew"));
+    }
+
+    public long initialQuantity() {
+        return Long.parseLong(values.get("initialQuantity"));
+    }
+
+    public int connectionPoolSize() {
+        return Integer.parseInt(values.get("connectionPoolSize"));
+    }
+
+    public String failure() {
+        return values.get("failure").toLowerCase(Locale.ROOT);
+    }
+
+    // 부하 시작 후 장애를 일으키기까지의 시간
+    public long failAfterMillis() {
+        return Long.parseLong(values.get("failAfterMillis"));
+    }
+
+    public String output() {
+        return values.get("output");
+    }
+
+    public Map<String, String> toMap() {
+        return new LinkedHashMap<>(values);
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.stock.benchmark;
+
+import com.example.stock.repository.StockRepository;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.jdbc.core.JdbcTemplate;
+import redis.embedded.RedisServer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+    한 프로세스 안에 N 개의 node(독립된 Spring context) 를 띄우고 모든 node 에 동시에 감소 요청을 보낸다.
+    node 들은 H2 DB 와 embedded Redis 만 공유하므로, 로컬 lock 만으로는 막을 수 없는 서버 간 경쟁을 재현할 수 있다.
+    node 수마다 새 DB / Redis 로 다시 띄워서 처리량과 정합성을 측정하고, 필요하면 부하 도중 node 하나를 죽인다.
+
+    ./gradlew :benchmark:clusterSimulation -PclusterArgs="strategy=redisson nodes=1,2,4 failure=kill-holder"
+ */
+public class ClusterSimulation {
+
+    private static final long FIRST_PRODUCT_ID = 1L;
+
+    private final ClusterScenario scenario;
+
+    private final ProductSelector selector;
+
+    public ClusterSimulation(final ClusterScenario scenario) {
+        this.scenario = scenario;
+        this.selector = new ProductSelector(FIRST_PRODUCT_ID, scenario.products(), scenario.skew());
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final ClusterScenario scenario = ClusterScenario.parse(args);
+        final Map<String, Object> report = new ClusterSimulation(scenario).run();
+        BenchmarkSupport.write(scenario.output(), "cluster-" + scenario.strategy() + "-" + scenario.failure(), report);
+        System.exit(0);
+    }
+
+    public Map<String, Object> run() throws InterruptedException {
+        final List<Map<String, Object>> runs = new ArrayList<>();
+        Double baseline = null;
+
+        for (final int nodes : scenario.nodes()) {
+            final Map<String, Object> result = new Run(nodes).execute();
+            final double throughput = (Double) result.get("decreasesPerSecond");
+            if (baseline == null) {
+                baseline = throughput;
+            }
+            // 첫 번째 node 수 대비 처리량 배율
+            result.put("scaling", baseline > 0 ? throughput / baseline : 0.0);
+            runs.add(result);
+        }
+
+        final Map<String, Object> report = new LinkedHashMap<>();
+        report.put("scenario", scenario.toMap());
+        report.put("runs", runs);
+        return report;
+    }
+
+    /*
+        node 수 하나에 대한 실행. 매번 새 DB 이름과 새 Redis 를 써서 앞선 실행의 lock / fencing 키가 남지 않게 한다.
+     */
+    private class Run {
+
+        private final int nodeCount;
+
+        private final AtomicLong remainingOperations = new AtomicLong(scenario.operations());
+
+        private final Histogram decreaseLatency = new ConcurrentHistogram(3);
+
+        private final AtomicLong soldOut = new AtomicLong();
+
+        private final AtomicLong errors = new AtomicLong();
+
+        private final AtomicLongArray decreasesPerNode;
+
+        // 상품별로 실제 감소에 성공한 수량 (rank 기준)
+        private final AtomicLongArray decreased;
+
+        // 죽은 node 에서 처리 중이던 요청의 수량. 커밋되었는지 알 수 없으므로 정합성 검사에서 오차로 허용한다.
+        private final AtomicLongArray unknown;
+
+        private volatile long failedAtNanos;
+
+        // 장애를 일으킬 때 지켜보는 상품. 아직 품절되지 않은 상품 중 가장 인기 있는 상품이다.
+        private volatile int watchedRank = -1;
+
+        // 장애 이후 watchedRank 상품의 감소가 다른 node 에서 처음 성공한 시각
+        private final AtomicLong recoveredAtNanos = new AtomicLong();
+
+        private Run(final int nodeCount) {
+            this.nodeCount = nodeCount;
+            this.decreasesPerNode = new AtomicLongArray(nodeCount);
+            this.decreased = new AtomicLongArray(scenario.products());
+            this.unknown = new AtomicLongArray(scenario.products());
+        }
+
+        private Map<String, Object> execute() throws InterruptedException {
+            final int redisPort = BenchmarkEnvironment.findFreePort();
+            final RedisServer redisServer = new RedisServer(redisPort);
+            redisServer.start();
+
+            final List<ClusterNode> nodes = new ArrayList<>(nodeCount);
+            try {
+                final String databaseName = "cluster-" + nodeCount + "-" + System.nanoTime();
+                for (int i = 0; i < nodeCount; i++) {
+                    nodes.add(ClusterNode.start(i, databaseName, redisPort, scenario.connectionPoolSize()));
+                }
+
+                // alias 와 데이터는 DB 에 있으므로 한 node 에서만 등록하면 모든 node 가 본다.
+                final ClusterNode first = nodes.get(0);
+                BenchmarkEnvironment.registerNamedLockFunctions(first.context().getBean(JdbcTemplate.class));
+                BenchmarkEnvironment.seed(first.context(), selector, scenario.initialQuantity());
+
+                final long elapsedNanos = drive(nodes);
+
+                // 쓰기를 모아 두는 전략은 살아 있는 node 의 감소분을 모두 DB 에 반영한 뒤 검사한다.
+                nodes.stream()
+                        .filter(ClusterNode::isAlive)
+                        .forEach(node -> StockStrategies.settle(scenario.strategy(), node.context()));
+
+                final double seconds = elapsedNanos / 1_000_000_000.0;
+                final Map<String, Object> result = new LinkedHashMap<>();
+                result.put("nodes", nodeCount);
+                result.put("elapsedMillis", TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+                result.put("decreasesPerSecond", sum(decreasesPerNode) / seconds);
+                result.put("counts", counts());
+                result.put("latencyMicros", BenchmarkSupport.percentiles(decreaseLatency));
+                result.put("failure", failure());
+                // 죽은 node 에서 결과를 받지 못한 요청은 커밋되었을 수도 있으므로 그만큼은 오차로 허용한다.
+                result.put("consistency", BenchmarkSupport.checkConsistency(selector, scenario.initialQuantity(),
+                        decreased, unknown, first.context().getBean(StockRepository.class)));
+                return result;
+            } finally {
+                nodes.forEach(ClusterNode::close);
+                redisServer.stop();
+            }
+        }
+
+        private long drive(final List<ClusterNode> nodes) throws InterruptedException {
+            final ExecutorService executorService = Executors.newFixedThreadPool(nodeCount * scenario.threadsPerNode());
+            final long start = System.nanoTime();
+            for (final ClusterNode node : nodes) {
+                final StockStrategies.StockDecreaser decreaser = StockStrategies.of(scenario.strategy(), node.context());
+                for (int i = 0; i < scenario.threadsPerNode(); i++) {
+                    executorService.submit(() -> work(node, decreaser));
+                }
+            }
+            executorService.shutdown();
+
+            // node 가 하나뿐이면 남은 node 가 없으므로 장애를 일으키지 않는다.
+            if (!"none".equals(scenario.failure()) && nodeCount > 1) {
+                if (!executorService.awaitTermination(scenario.failAfterMillis(), TimeUnit.MILLISECONDS)) {
+                    inject(nodes.get(nodeCount - 1));
+                }
+            }
+
+            executorService.awaitTermination(1, TimeUnit.HOURS);
+            return System.nanoTime() - start;
+        }
+
+        private void inject(final ClusterNode victim) throws InterruptedException {
+            watchedRank = hottestInStock();
+            if ("kill-holder".equals(scenario.failure())) {
+                victim.killWhileHolding(scenario.strategy(), selector.productIdAt(watchedRank));
+            } else {
+                victim.kill();
+            }
+            failedAtNanos = System.nanoTime();
+        }
+
+        private void work(final ClusterNode node, final StockStrategies.StockDecreaser decreaser) {
+            while (node.isAlive() && remainingOperations.getAndDecrement() > 0) {
+                final long productId = selector.next();
+                final int rank = (int) (productId - FIRST_PRODUCT_ID);
+                final long start = System.nanoTime();
+                try {
+                    decreaser.decrease(productId, 1L);
+                    decreased.incrementAndGet(rank);
+                    decreasesPerNode.incrementAndGet(node.index());
+                    if (rank == watchedRank && failedAtNanos != 0) {
+                        recoveredAtNanos.compareAndSet(0, System.nanoTime());
+                    }
+                } catch (IllegalArgumentException e) {
+                    soldOut.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (RuntimeException e) {
+                    if (!node.isAlive()) {
+                        unknown.incrementAndGet(rank);
+                    }
+                    errors.incrementAndGet();
+                }
+                decreaseLatency.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+            }
+        }
+
+        private int hottestInStock() {
+            for (int rank = 0; rank < selector.size(); rank++) {
+                if (decreased.get(rank) < scenario.initialQuantity()) {
+                    return rank;
+                }
+            }
+            return 0;
+        }
+
+        private Map<String, Object> counts() {
+            final List<Long> perNode = new ArrayList<>(nodeCount);
+            for (int i = 0; i < nodeCount; i++) {
+                perNode.add(decreasesPerNode.get(i));
+            }
+
+            final Map<String, Object> counts = new LinkedHashMap<>();
+            counts.put("decreases", sum(decreasesPerNode));
+            counts.put("decreasesPerNode", perNode);
+            counts.put("soldOut", soldOut.get());
+            counts.put("errors", errors.get());
+            counts.put("unknownOutcomes", sum(unknown));
+            return counts;
+        }
+
+        private Map<String, Object> failure() {
+            final Map<String, Object> failure = new LinkedHashMap<>();
+            failure.put("type", failedAtNanos == 0 ? "none" : scenario.failure());
+            if (failedAtNanos != 0) {
+                failure.put("node", nodeCount - 1);
+                failure.put("productId", selector.productIdAt(watchedRank));
+                // 장애 후 그 상품이 다시 팔리기까지 걸린 시간. kill-holder 라면 대략 lock lease 만료 시간이다.
+                final long recoveredAt = recoveredAtNanos.get();
+                failure.put("recoveryMillis",
+                        recoveredAt == 0 ? null : TimeUnit.NANOSECONDS.toMillis(recoveredAt - failedAtNanos));
+            }
+            return failure;
+        }
+    }
+
+    private static long sum(final AtomicLongArray values) {
+        long sum = 0;
+        for (int i = 0; i < values.length(); i++) {
+            sum += values.get(i);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.stock.benchmark;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/*
+    H2 에는 MySQL 의 GET_LOCK / RELEASE_LOCK 이 없으므로 같은 이름의 Java 함수를 alias 로 등록해서 흉내낸다.
+    MySQL 과 달리 세션 단위가 아니라 이름 단위의 binary semaphore 이고, 세션이 끊겨도 자동으로 풀리지 않는다.
+ */
+public final class H2NamedLocks {
+
+    private static final ConcurrentMap<String, Semaphore> LOCKS = new ConcurrentHashMap<>();
+
+    private H2NamedLocks() {
+    }
+
+    public static int getLock(final String name, final int timeoutSeconds) throws InterruptedException {
+        final Semaphore semaphore = LOCKS.computeIfAbsent(name, key -> new Semaphore(1));
+        return semaphore.tryAcquire(timeoutSeconds, TimeUnit.SECONDS) ? 1 : 0;
+    }
+
+    public static int releaseLock(final String name) {
+        final Semaphore semaphore = LOCKS.get(name);
+        if (semaphore == null || semaphore.availablePermits() > 0) {
+            return 0;
+        }
+        semaphore.release();
+        return 1;
+    }
+}
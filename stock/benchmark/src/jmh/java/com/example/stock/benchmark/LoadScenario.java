@@ -0,0 +1,116 @@
+package com.example.stock.benchmark;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/*
+    부하 시나리오 설정. preset 을 고른 뒤 key=value 인자로 원하는 항목만 덮어쓴다.
+
+    - single-hot : StockServiceTest 와 같은 상황 (상품 1개, 수량 1, 조회 없음)
+    - flash-sale : 소수의 인기 상품에 몰리고 금방 품절되는 상황
+    - catalog    : 많은 상품에 조회가 대부분이고 감소는 가끔 일어나는 상황
+ */
+public class LoadScenario {
+
+    private final Map<String, String> values;
+
+    private LoadScenario(final Map<String, String> values) {
+        this.values = values;
+    }
+
+    public static LoadScenario parse(final String... args) {
+        final Map<String, String> overrides = BenchmarkSupport.parseArguments(args);
+        final Map<String, String> values = preset(overrides.getOrDefault("scenario", "flash-sale"));
+        values.putAll(overrides);
+        return new LoadScenario(values);
+    }
+
+    private static Map<String, String> preset(final String name) {
+        final Map<String, String> values = new LinkedHashMap<>();
+        values.put("scenario", name);
+        values.put("strategy", "pessimistic");
+        values.put("threads", "32");
+        values.put("operations", "100000");
+        values.put("connectionPoolSize", "10");
+        values.put("output", "build/results/scenarios");
+
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case "single-hot":
+                values.put("products", "1");
+                values.put("skew", "0");
+                values.put("readRatio", "0");
+                values.put("maxQuantity", "1");
+                values.put("initialQuantity", "1000");
+                values.put("operations", "1000");
+                break;
+            case "flash-sale":
+                values.put("products", "100");
+                values.put("skew", "1.1");
+                values.put("readRatio", "0.5");
+                values.put("maxQuantity", "3");
+                values.put("initialQuantity", "200");
+                break;
+            case "catalog":
+                values.put("products", "10000");
+                values.put("skew", "0.8");
+                values.put("readRatio", "0.9");
+                values.put("maxQuantity", "2");
+                values.put("initialQuantity", "1000");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown scenario: " + name + " (one of single-hot, flash-sale, catalog)");
+        }
+        return values;
+    }
+
+    public String name() {
+        return values.get("scenario");
+    }
+
+    public String strategy() {
+        return values.get("strategy");
+    }
+
+    public int threads() {
+        return Integer.parseInt(values.get("threads"));
+    }
+
+    public long operations() {
+        return Long.parseLong(values.get("operations"));
+    }
+
+    public int connectionPoolSize() {
+        return Integer.parseInt(values.get("connectionPoolSize"));
+    }
+
+    public int products() {
+        return Integer.parseInt(values.get("products"));
+    }
+
+    public double skew() {
+        return Double.parseDouble(values.get("skew"));
+    }
+
+    // 전체 요청 중 조회 비율
+    public double readRatio() {
+        return Double.parseDouble(values.get("readRatio"));
+    }
+
+    // 감소 수량은 1 ~ maxQuantity 에서 균등하게 고른다.
+    public int maxQuantity() {
+        return Integer.parseInt(values.get("maxQuantity"));
+    }
+
+    public long initialQuantity() {
+        return Long.parseLong(values.get("initialQuantity"));
+    }
+
+    public String output() {
+        return values.get("output");
+    }
+
+    public Map<String, String> toMap() {
+        return new LinkedHashMap<>(values);
+    }
+}
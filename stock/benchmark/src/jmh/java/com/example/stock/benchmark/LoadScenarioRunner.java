@@ -0,0 +1,157 @@
+package com.example.stock.benchmark;
+
+import com.example.stock.repository.StockRepository;
+import com.example.stock.service.StockQueryService;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+    선택한 전략에 시나리오 부하를 주고 처리량, 지연 시간(HdrHistogram), 정합성 검사 결과를 JSON 파일로 남긴다.
+
+    ./gradlew :benchmark:loadScenario -PscenarioArgs="scenario=flash-sale strategy=atomic-update threads=64"
+ */
+public class LoadScenarioRunner {
+
+    private static final long FIRST_PRODUCT_ID = 1L;
+
+    private final LoadScenario scenario;
+
+    private final ProductSelector selector;
+
+    private final Histogram readLatency = new ConcurrentHistogram(3);
+
+    private final Histogram decreaseLatency = new ConcurrentHistogram(3);
+
+    private final AtomicLong remainingOperations;
+
+    private final AtomicLong reads = new AtomicLong();
+
+    private final AtomicLong decreases = new AtomicLong();
+
+    private final AtomicLong soldOut = new AtomicLong();
+
+    private final AtomicLong errors = new AtomicLong();
+
+    // 상품별로 실제 감소에 성공한 수량 (rank 기준)
+    private final AtomicLongArray decreased;
+
+    public LoadScenarioRunner(final LoadScenario scenario) {
+        this.scenario = scenario;
+        this.selector = new ProductSelector(FIRST_PRODUCT_ID, scenario.products(), scenario.skew());
+        this.remainingOperations = new AtomicLong(scenario.operations());
+        this.decreased = new AtomicLongArray(scenario.products());
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final LoadScenario scenario = LoadScenario.parse(args);
+        final Map<String, Object> report = new LoadScenarioRunner(scenario).run();
+        BenchmarkSupport.write(scenario.output(), scenario.name() + "-" + scenario.strategy(), report);
+        System.exit(0);
+    }
+
+    public Map<String, Object> run() throws InterruptedException {
+        try (BenchmarkEnvironment environment = BenchmarkEnvironment.start(scenario.connectionPoolSize())) {
+            environment.seed(selector, scenario.initialQuantity());
+
+            final StockStrategies.StockDecreaser decreaser = StockStrategies.of(scenario.strategy(), environment.context());
+            final StockQueryService queryService = environment.context().getBean(StockQueryService.class);
+
+            final ExecutorService executorService = Executors.newFixedThreadPool(scenario.threads());
+            final long start = System.nanoTime();
+            for (int i = 0; i < scenario.threads(); i++) {
+                executorService.submit(() -> work(decreaser, queryService));
+            }
+            executorService.shutdown();
+            executorService.awaitTermination(1, TimeUnit.HOURS);
+            final long elapsedNanos = System.nanoTime() - start;
+
+            // 쓰기를 모아 두는 전략은 DB 에 반영한 뒤 검사한다.
+            StockStrategies.settle(scenario.strategy(), environment.context());
+
+            final Map<String, Object> report = new LinkedHashMap<>();
+            report.put("scenario", scenario.toMap());
+            report.put("startedAt", Instant.now().minusNanos(elapsedNanos).toString());
+            report.put("elapsedMillis", TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+            report.put("throughput", throughput(elapsedNanos));
+            report.put("counts", counts());
+            report.put("latencyMicros", latency());
+            report.put("consistency", BenchmarkSupport.checkConsistency(selector, scenario.initialQuantity(),
+                    decreased, null, environment.context().getBean(StockRepository.class)));
+            return report;
+        }
+    }
+
+    private void work(final StockStrategies.StockDecreaser decreaser, final StockQueryService queryService) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (remainingOperations.getAndDecrement() > 0) {
+            final long productId = selector.next();
+
+            if (random.nextDouble() < scenario.readRatio()) {
+                final long start = System.nanoTime();
+                try {
+                    queryService.getQuantity(productId);
+                    reads.incrementAndGet();
+                } catch (RuntimeException e) {
+                    errors.incrementAndGet();
+                }
+                readLatency.recordValue(micros(start));
+                continue;
+            }
+
+            final long quantity = 1 + random.nextInt(scenario.maxQuantity());
+            final long start = System.nanoTime();
+            try {
+                decreaser.decrease(productId, quantity);
+                decreased.addAndGet((int) (productId - FIRST_PRODUCT_ID), quantity);
+                decreases.incrementAndGet();
+            } catch (IllegalArgumentException e) {
+                soldOut.incrementAndGet();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                errors.incrementAndGet();
+            }
+            decreaseLatency.recordValue(micros(start));
+        }
+    }
+
+    private Map<String, Object> throughput(final long elapsedNanos) {
+        final double seconds = elapsedNanos / 1_000_000_000.0;
+        final Map<String, Object> throughput = new LinkedHashMap<>();
+        throughput.put("operationsPerSecond", (readLatency.getTotalCount() + decreaseLatency.getTotalCount()) / seconds);
+        throughput.put("decreasesPerSecond", decreases.get() / seconds);
+        throughput.put("readsPerSecond", reads.get() / seconds);
+        return throughput;
+    }
+
+    private Map<String, Object> counts() {
+        final Map<String, Object> counts = new LinkedHashMap<>();
+        counts.put("reads", reads.get());
+        counts.put("decreases", decreases.get());
+        counts.put("soldOut", soldOut.get());
+        counts.put("errors", errors.get());
+        return counts;
+    }
+
+    private Map<String, Object> latency() {
+        final Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("read", BenchmarkSupport.percentiles(readLatency));
+        latency.put("decrease", BenchmarkSupport.percentiles(decreaseLatency));
+        return latency;
+    }
+
+    private static long micros(final long startNanos) {
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.stock.benchmark;
+
+import com.example.stock.domain.Stock;
+import com.example.stock.repository.PessimisticStockRepository;
+import com.example.stock.repository.StockIdResolver;
+import com.example.stock.repository.StockRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+    상품 수가 많을 때 productId 로 찾는 비용과 row lock 을 잡는 비용을 비교한다.
+
+    - lookup            : productId 로 조회 (lock 없음)
+    - lockByProductId   : productId(secondary index) 로 PESSIMISTIC_WRITE
+    - lockByPrimaryKey  : productId -> id 캐시를 거쳐 PK 로 PESSIMISTIC_WRITE
+    productIdIndex=false 는 unique index 를 지워서 index 가 없을 때(full scan)의 비용을 보여준다.
+
+    예) java -jar benchmark/build/libs/benchmark-0.0.1-SNAPSHOT-jmh.jar ProductLookupBenchmark \
+            -t 8 -p products=1000000 -p productIdIndex=true,false
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ProductLookupBenchmark {
+
+    private static final long FIRST_PRODUCT_ID = 1L;
+
+    @Param({"1000000"})
+    public int products;
+
+    @Param({"true", "false"})
+    public boolean productIdIndex;
+
+    @Param({"10"})
+    public int connectionPoolSize;
+
+    private BenchmarkEnvironment environment;
+
+    private ProductSelector selector;
+
+    private StockRepository stockRepository;
+
+    private PessimisticStockRepository pessimisticStockRepository;
+
+    private TransactionTemplate transactionTemplate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        environment = BenchmarkEnvironment.start(connectionPoolSize);
+        // 모든 상품을 고르게 조회해야 캐시 / buffer pool 효과가 아닌 index 효과를 볼 수 있다.
+        selector = new ProductSelector(FIRST_PRODUCT_ID, products, 0.0);
+        environment.seed(selector, 1_000L);
+
+        if (!productIdIndex) {
+            environment.context().getBean(JdbcTemplate.class)
+                    .execute("alter table stock drop constraint if exists uk_stock_product_id");
+        }
+
+        stockRepository = environment.context().getBean(StockRepository.class);
+        pessimisticStockRepository = environment.context().getBean(PessimisticStockRepository.class);
+        transactionTemplate = environment.context().getBean(TransactionTemplate.class);
+
+        // id 캐시는 한 번씩 채워 둔 상태에서 측정한다.
+        final StockIdResolver resolver = environment.context().getBean(StockIdResolver.class);
+        for (int rank = 0; rank < selector.size(); rank++) {
+            resolver.resolve(selector.productIdAt(rank));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        environment.close();
+    }
+
+    @Benchmark
+    public Stock lookup() {
+        return stockRepository.getByProductId(selector.next());
+    }
+
+    @Benchmark
+    public Stock lockByProductId() {
+        final long productId = selector.next();
+        return transactionTemplate.execute(status -> pessimisticStockRepository.getByProductId(productId));
+    }
+
+    @Benchmark
+    public Stock lockByPrimaryKey() {
+        final long productId = selector.next();
+        return transactionTemplate.execute(status -> pessimisticStockRepository.lockByProductId(productId));
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.stock.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+    productId 를 Zipf 분포로 뽑는다. skew 가 0 이면 균등 분포이고, 1 에 가까울수록 소수의 상품에 요청이 몰린다.
+ */
+public class ProductSelector {
+
+    private final long firstProductId;
+
+    private final double[] cumulative;
+
+    public ProductSelector(final long firstProductId, final int products, final double skew) {
+        this.firstProductId = firstProductId;
+        this.cumulative = new double[products];
+
+        double sum = 0;
+        for (int rank = 0; rank < products; rank++) {
+            sum += 1.0 / Math.pow(rank + 1, skew);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < products; rank++) {
+            cumulative[rank] /= sum;
+        }
+    }
+
+    public long next() {
+        final double point = ThreadLocalRandom.current().nextDouble();
+        int index = Arrays.binarySearch(cumulative, point);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return firstProductId + Math.min(index, cumulative.length - 1);
+    }
+
+    public int size() {
+        return cumulative.length;
+    }
+
+    public long productIdAt(final int rank) {
+        return firstProductId + rank;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.stock.benchmark;
+
+import com.example.stock.facade.CoalescingStockFacade;
+import com.example.stock.facade.LettuceLockStockFacade;
+import com.example.stock.facade.NamedLockStockFacade;
+import com.example.stock.facade.OptimisticLockStockFacade;
+import com.example.stock.facade.RedissonLockStockFacade;
+import com.example.stock.service.AtomicUpdateStockService;
+import com.example.stock.service.InMemoryStockService;
+import com.example.stock.service.LedgerStockService;
+import com.example.stock.service.PessimisticLockStockService;
+import com.example.stock.service.RedisScriptStockService;
+import com.example.stock.service.StockService;
+import org.springframework.context.ApplicationContext;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/*
+    벤치마크 / 부하 시나리오에서 이름으로 선택할 수 있는 재고 감소 전략 목록.
+ */
+public final class StockStrategies {
+
+    public static final List<String> NAMES = Collections.unmodifiableList(Arrays.asList(
+            "synchronized", "pessimistic", "optimistic", "named", "lettuce", "redisson",
+            "atomic-update", "coalescing", "in-memory", "redis-script", "ledger"));
+
+    private StockStrategies() {
+    }
+
+    public static StockDecreaser of(final String name, final ApplicationContext context) {
+        switch (name) {
+            case "synchronized":
+                return context.getBean(StockService.class)::decrease;
+            case "pessimistic":
+                return context.getBean(PessimisticLockStockService.class)::decrease;
+            case "optimistic":
+                return context.getBean(OptimisticLockStockFacade.class)::decrease;
+            case "named":
+                return context.getBean(NamedLockStockFacade.class)::decrease;
+            case "lettuce":
+                return context.getBean(LettuceLockStockFacade.class)::decrease;
+            case "redisson":
+                return context.getBean(RedissonLockStockFacade.class)::decrease;
+            case "atomic-update":
+                return context.getBean(AtomicUpdateStockService.class)::decrease;
+            case "coalescing":
+                return context.getBean(CoalescingStockFacade.class)::decrease;
+            case "in-memory":
+                return context.getBean(InMemoryStockService.class)::decrease;
+            case "redis-script":
+                return context.getBean(RedisScriptStockService.class)::decrease;
+            case "ledger":
+                return context.getBean(LedgerStockService.class)::decrease;
+            default:
+                throw new IllegalArgumentException("Unknown stock strategy: " + name + " (one of " + NAMES + ")");
+        }
+    }
+
+    /**
+     * 감소분을 모아 두었다가 나중에 DB 에 쓰는 전략은 남은 감소분을 모두 반영한다.
+     */
+    public static void settle(final String name, final ApplicationContext context) {
+        switch (name) {
+            case "in-memory":
+                context.getBean(InMemoryStockService.class).flush();
+                break;
+            case "redis-script":
+                context.getBean(RedisScriptStockService.class).sync();
+                break;
+            case "ledger":
+                context.getBean(LedgerStockService.class).compact();
+                break;
+            default:
+                break;
+        }
+    }
+
+    @FunctionalInterface
+    public interface StockDecreaser {
+        void decrease(Long productId, Long quantity) throws InterruptedException;
+    }
+}
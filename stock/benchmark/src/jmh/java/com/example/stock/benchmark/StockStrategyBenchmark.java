@@ -0,0 +1,71 @@
+package com.example.stock.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+    재고 감소 전략별 처리량(thrpt)과 지연 시간 분포(sample: p50 ~ p99.99)를 측정한다.
+
+    스레드 수: -t 옵션 또는 ./gradlew :benchmark:jmh -PjmhThreads=32
+    예) java -jar benchmark/build/libs/benchmark-0.0.1-SNAPSHOT-jmh.jar StockStrategyBenchmark \
+            -t 32 -p strategy=pessimistic,atomic-update -p products=1,1000 -p skew=0.99
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StockStrategyBenchmark {
+
+    // 벤치마크 도중 품절되지 않도록 충분히 큰 수량으로 시작한다.
+    private static final long INITIAL_QUANTITY = Long.MAX_VALUE / 4;
+
+    private static final long FIRST_PRODUCT_ID = 1L;
+
+    @Param({"synchronized", "pessimistic", "optimistic", "named", "lettuce", "redisson",
+            "atomic-update", "coalescing", "in-memory", "redis-script", "ledger"})
+    public String strategy;
+
+    // 요청이 분산되는 상품 수
+    @Param({"1", "100"})
+    public int products;
+
+    // Zipf 분포의 skew. 0 이면 균등, 1 에 가까울수록 hot product 에 몰린다.
+    @Param({"0.0", "0.99"})
+    public double skew;
+
+    @Param({"10"})
+    public int connectionPoolSize;
+
+    private BenchmarkEnvironment environment;
+
+    private ProductSelector selector;
+
+    private StockStrategies.StockDecreaser decreaser;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        environment = BenchmarkEnvironment.start(connectionPoolSize);
+        selector = new ProductSelector(FIRST_PRODUCT_ID, products, skew);
+        environment.seed(selector, INITIAL_QUANTITY);
+        decreaser = StockStrategies.of(strategy, environment.context());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        environment.close();
+    }
+
+    @Benchmark
+    public void decrease() throws InterruptedException {
+        decreaser.decrease(selector.next(), 1L);
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.stock.adaptive;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/*
+    모드 전환 기준. 올라갈 때와 내려올 때의 기준을 다르게 두고(hysteresis),
+    한 번 전환하면 minDwellMillis 동안은 다시 전환하지 않아서 모드가 왔다 갔다 하지 않도록 한다.
+    AdaptiveStockFacade 의 @Scheduled 가 "adaptiveProperties" 이름으로 주기를 읽으므로 @Component 로 등록한다.
+ */
+@Component
+@ConfigurationProperties(prefix = "stock.adaptive")
+public class AdaptiveProperties {
+
+    private long windowMillis = 10_000;
+
+    private int windowSlots = 10;
+
+    private long evaluateIntervalMillis = 200;
+
+    private long minDwellMillis = 5_000;
+
+    // 이 값 이상의 optimistic 충돌률이면 pessimistic 으로 올린다.
+    private double conflictRateToPessimistic = 0.2;
+
+    // 요청 도착 시점의 평균 동시 처리 수 기준
+    private double concurrencyToPessimistic = 2.0;
+
+    private double concurrencyToOptimistic = 1.2;
+
+    private double concurrencyToCoalescing = 16.0;
+
+    private double concurrencyToPessimisticFromCoalescing = 8.0;
+
+    // 최근 요청이 없고 기본 모드로 돌아온 상품의 추적을 정리하는 주기
+    private long cleanupIntervalMillis = 60_000;
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public void setWindowMillis(final long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    public int getWindowSlots() {
+        return windowSlots;
+    }
+
+    public void setWindowSlots(final int windowSlots) {
+        this.windowSlots = windowSlots;
+    }
+
+    public long getEvaluateIntervalMillis() {
+        return evaluateIntervalMillis;
+    }
+
+    public void setEvaluateIntervalMillis(final long evaluateIntervalMillis) {
+        this.evaluateIntervalMillis = evaluateIntervalMillis;
+    }
+
+    public long getMinDwellMillis() {
+        return minDwellMillis;
+    }
+
+    public void setMinDwellMillis(final long minDwellMillis) {
+        this.minDwellMillis = minDwellMillis;
+    }
+
+    public double getConflictRateToPessimistic() {
+        return conflictRateToPessimistic;
+    }
+
+    public void setConflictRateToPessimistic(final double conflictRateToPessimistic) {
+        this.conflictRateToPessimistic = conflictRateToPessimistic;
+    }
+
+    public double getConcurrencyToPessimistic() {
+        return concurrencyToPessimistic;
+    }
+
+    public void setConcurrencyToPessimistic(final double concurrencyToPessimistic) {
+        this.concurrencyToPessimistic = concurrencyToPessimistic;
+    }
+
+    public double getConcurrencyToOptimistic() {
+        return concurrencyToOptimistic;
+    }
+
+    public void setConcurrencyToOptimistic(final double concurrencyToOptimistic) {
+        this.concurrencyToOptimistic = concurrencyToOptimistic;
+    }
+
+    public double getConcurrencyToCoalescing() {
+        return concurrencyToCoalescing;
+    }
+
+    public void setConcurrencyToCoalescing(final double concurrencyToCoalescing) {
+        this.concurrencyToCoalescing = concurrencyToCoalescing;
+    }
+
+    public double getConcurrencyToPessimisticFromCoalescing() {
+        return concurrencyToPessimisticFromCoalescing;
+    }
+
+    public void setConcurrencyToPessimisticFromCoalescing(final double concurrencyToPessimisticFromCoalescing) {
+        this.concurrencyToPessimisticFromCoalescing = concurrencyToPessimisticFromCoalescing;
+    }
+
+    public long getCleanupIntervalMillis() {
+        return cleanupIntervalMillis;
+    }
+
+    public void setCleanupIntervalMillis(final long cleanupIntervalMillis) {
+        this.cleanupIntervalMillis = cleanupIntervalMillis;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.stock.adaptive;
+
+import com.example.stock.facade.AdaptiveStockFacade;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+// GET /actuator/stockstrategy, /actuator/stockstrategy/{productId}
+@Component
+@Endpoint(id = "stockstrategy")
+public class AdaptiveStrategyEndpoint {
+
+    private final AdaptiveStockFacade adaptiveStockFacade;
+
+    public AdaptiveStrategyEndpoint(final AdaptiveStockFacade adaptiveStockFacade) {
+        this.adaptiveStockFacade = adaptiveStockFacade;
+    }
+
+    @ReadOperation
+    public Map<Long, Map<String, Object>> products() {
+        return adaptiveStockFacade.describe();
+    }
+
+    @ReadOperation
+    public Map<String, Object> product(@Selector final Long productId) {
+        return adaptiveStockFacade.describe(productId);
+    }
+}
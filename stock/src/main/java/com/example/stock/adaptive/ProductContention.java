@@ -0,0 +1,204 @@
+package com.example.stock.adaptive;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+    상품 하나의 최근 경합 정도를 sliding window(시간 slot 의 원형 배열)로 기록하고, 현재 모드를 결정한다.
+ */
+public class ProductContention {
+
+    private final AdaptiveProperties properties;
+
+    private final long slotMillis;
+
+    private final Slot[] slots;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicLong lastEvaluatedMillis = new AtomicLong();
+
+    private volatile StockLockMode mode = StockLockMode.OPTIMISTIC;
+
+    private volatile long lastSwitchedMillis;
+
+    private volatile String lastSwitchReason = "initial";
+
+    public ProductContention(final AdaptiveProperties properties, final long nowMillis) {
+        this.properties = properties;
+        this.slotMillis = Math.max(1, properties.getWindowMillis() / properties.getWindowSlots());
+        this.slots = new Slot[properties.getWindowSlots()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot();
+        }
+        // 처음 만든 모드는 전환으로 치지 않는다. 생성 직후부터 경합이 심하면 minDwellMillis 를 기다리지 않고 올린다.
+        this.lastSwitchedMillis = nowMillis - properties.getMinDwellMillis();
+    }
+
+    public StockLockMode mode() {
+        return mode;
+    }
+
+    /**
+     * 요청 시작. 도착 시점에 이미 처리 중이던 요청 수를 함께 기록한다.
+     */
+    public void started(final long nowMillis) {
+        final int concurrent = inFlight.getAndIncrement();
+        final Slot slot = slot(nowMillis);
+        slot.requests.increment();
+        slot.concurrency.add(concurrent);
+    }
+
+    public void finished(final long nowMillis, final long elapsedNanos, final boolean optimisticAttempt, final boolean conflict) {
+        inFlight.decrementAndGet();
+        final Slot slot = slot(nowMillis);
+        slot.latencyNanos.add(elapsedNanos);
+        if (optimisticAttempt) {
+            slot.optimisticAttempts.increment();
+        }
+        if (conflict) {
+            slot.conflicts.increment();
+        }
+
+        final long lastEvaluated = lastEvaluatedMillis.get();
+        if (nowMillis - lastEvaluated >= properties.getEvaluateIntervalMillis()
+                && lastEvaluatedMillis.compareAndSet(lastEvaluated, nowMillis)) {
+            evaluate(nowMillis);
+        }
+    }
+
+    public boolean isIdle(final long nowMillis) {
+        return mode == StockLockMode.OPTIMISTIC && inFlight.get() == 0 && snapshot(nowMillis).requests == 0;
+    }
+
+    public Map<String, Object> describe(final long nowMillis) {
+        final Snapshot snapshot = snapshot(nowMillis);
+        final Map<String, Object> description = new LinkedHashMap<>();
+        description.put("mode", mode);
+        description.put("lastSwitchedMillisAgo", nowMillis - lastSwitchedMillis);
+        description.put("lastSwitchReason", lastSwitchReason);
+        description.put("inFlight", inFlight.get());
+        description.put("requests", snapshot.requests);
+        description.put("conflictRate", snapshot.conflictRate());
+        description.put("averageConcurrency", snapshot.averageConcurrency());
+        description.put("averageLatencyMillis", snapshot.averageLatencyMillis());
+        return description;
+    }
+
+    private void evaluate(final long nowMillis) {
+        if (nowMillis - lastSwitchedMillis < properties.getMinDwellMillis()) {
+            return;
+        }
+
+        final Snapshot snapshot = snapshot(nowMillis);
+        final double concurrency = snapshot.averageConcurrency();
+
+        switch (mode) {
+            case OPTIMISTIC:
+                if (concurrency >= properties.getConcurrencyToCoalescing()) {
+                    switchTo(StockLockMode.COALESCING, nowMillis, "concurrency " + concurrency);
+                } else if (snapshot.conflictRate() >= properties.getConflictRateToPessimistic()) {
+                    switchTo(StockLockMode.PESSIMISTIC, nowMillis, "conflict rate " + snapshot.conflictRate());
+                } else if (concurrency >= properties.getConcurrencyToPessimistic()) {
+                    switchTo(StockLockMode.PESSIMISTIC, nowMillis, "concurrency " + concurrency);
+                }
+                break;
+            case PESSIMISTIC:
+                if (concurrency >= properties.getConcurrencyToCoalescing()) {
+                    switchTo(StockLockMode.COALESCING, nowMillis, "concurrency " + concurrency);
+                } else if (concurrency < properties.getConcurrencyToOptimistic()) {
+                    switchTo(StockLockMode.OPTIMISTIC, nowMillis, "concurrency " + concurrency);
+                }
+                break;
+            case COALESCING:
+                if (concurrency < properties.getConcurrencyToPessimisticFromCoalescing()) {
+                    switchTo(StockLockMode.PESSIMISTIC, nowMillis, "concurrency " + concurrency);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 외부 신호(예: hot product 감지)로 모드를 바로 바꾼다. minDwellMillis 동안 유지된다.
+     */
+    public void force(final StockLockMode target, final long nowMillis, final String reason) {
+        switchTo(target, nowMillis, reason);
+    }
+
+    private void switchTo(final StockLockMode target, final long nowMillis, final String reason) {
+        mode = target;
+        lastSwitchedMillis = nowMillis;
+        lastSwitchReason = reason;
+    }
+
+    private Slot slot(final long nowMillis) {
+        final long epoch = nowMillis / slotMillis;
+        final Slot slot = slots[(int) (epoch % slots.length)];
+        if (slot.epoch != epoch) {
+            synchronized (slot) {
+                if (slot.epoch != epoch) {
+                    slot.reset(epoch);
+                }
+            }
+        }
+        return slot;
+    }
+
+    private Snapshot snapshot(final long nowMillis) {
+        final long currentEpoch = nowMillis / slotMillis;
+        final Snapshot snapshot = new Snapshot();
+        for (final Slot slot : slots) {
+            if (currentEpoch - slot.epoch < slots.length) {
+                snapshot.requests += slot.requests.sum();
+                snapshot.optimisticAttempts += slot.optimisticAttempts.sum();
+                snapshot.conflicts += slot.conflicts.sum();
+                snapshot.concurrency += slot.concurrency.sum();
+                snapshot.latencyNanos += slot.latencyNanos.sum();
+            }
+        }
+        return snapshot;
+    }
+
+    private static final class Slot {
+        private volatile long epoch = -1;
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder optimisticAttempts = new LongAdder();
+        private final LongAdder conflicts = new LongAdder();
+        private final LongAdder concurrency = new LongAdder();
+        private final LongAdder latencyNanos = new LongAdder();
+
+        private void reset(final long epoch) {
+            requests.reset();
+            optimisticAttempts.reset();
+            conflicts.reset();
+            concurrency.reset();
+            latencyNanos.reset();
+            this.epoch = epoch;
+        }
+    }
+
+    private static final class Snapshot {
+        private long requests;
+        private long optimisticAttempts;
+        private long conflicts;
+        private long concurrency;
+        private long latencyNanos;
+
+        private double conflictRate() {
+            return optimisticAttempts == 0 ? 0 : (double) conflicts / optimisticAttempts;
+        }
+
+        private double averageConcurrency() {
+            return requests == 0 ? 0 : (double) concurrency / requests;
+        }
+
+        private double averageLatencyMillis() {
+            return requests == 0 ? 0 : latencyNanos / 1_000_000.0 / requests;
+        }
+    }
+}
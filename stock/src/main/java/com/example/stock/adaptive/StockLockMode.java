@@ -0,0 +1,6 @@
+package com.example.stock.adaptive;
+
+// 경합이 심해질수록 아래쪽 모드로 옮겨 간다.
+public enum StockLockMode {
+    OPTIMISTIC, PESSIMISTIC, COALESCING
+}
@@ -0,0 +1,9 @@
+package com.example.stock.admission;
+
+// 상품별 대기열이 가득 찼거나 대기 시간 안에 순서가 오지 않아 요청을 처리하지 않고 버렸다.
+public class AdmissionRejectedException extends IllegalStateException {
+
+    public AdmissionRejectedException(final Long productId, final String reason) {
+        super("Request rejected by admission control: productId=" + productId + ", reason=" + reason);
+    }
+}
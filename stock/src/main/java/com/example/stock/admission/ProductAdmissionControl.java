@@ -0,0 +1,109 @@
+package com.example.stock.admission;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+    상품별로 동시에 처리하는 요청 수(maxConcurrency)와 그 뒤에서 기다리는 요청 수(maxWaiting)를 제한한다.
+    대기열이 가득 차면 바로, 기다리다 waitTimeout 이 지나면 그때 AdmissionRejectedException 으로 요청을 버린다. (load shedding)
+    lock 이나 connection 을 기다리며 쌓이는 대신 여기서 먼저 걸러지므로 hot product 하나가 전체 pool 을 잡아먹지 않는다.
+
+    ProductLockManager 와 마찬가지로 항목은 참조하는 요청이 없어지면 바로 제거된다.
+ */
+@Component
+public class ProductAdmissionControl {
+
+    private final ConcurrentMap<Long, Gate> gates = new ConcurrentHashMap<>();
+
+    private final int maxConcurrency;
+
+    private final int maxWaiting;
+
+    private final long waitTimeoutMillis;
+
+    public ProductAdmissionControl(@Value("${stock.admission.max-concurrency:64}") final int maxConcurrency,
+                                   @Value("${stock.admission.max-waiting:2000}") final int maxWaiting,
+                                   @Value("${stock.admission.wait-timeout-ms:60000}") final long waitTimeoutMillis) {
+        this.maxConcurrency = maxConcurrency;
+        this.maxWaiting = maxWaiting;
+        this.waitTimeoutMillis = waitTimeoutMillis;
+    }
+
+    public void acquire(final Long productId) {
+        final Gate gate = acquireReference(productId);
+        boolean admitted = false;
+        try {
+            // 바로 들어갈 수 있다면 대기열 자리를 차지하지 않는다.
+            if (gate.permits.tryAcquire()) {
+                admitted = true;
+                return;
+            }
+
+            if (gate.waiting.incrementAndGet() > maxWaiting) {
+                gate.waiting.decrementAndGet();
+                throw new AdmissionRejectedException(productId, "queue-full");
+            }
+            try {
+                admitted = gate.permits.tryAcquire(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AdmissionRejectedException(productId, "interrupted");
+            } finally {
+                gate.waiting.decrementAndGet();
+            }
+
+            if (!admitted) {
+                throw new AdmissionRejectedException(productId, "timeout");
+            }
+        } finally {
+            if (!admitted) {
+                releaseReference(productId);
+            }
+        }
+    }
+
+    public void release(final Long productId) {
+        final Gate gate = gates.get(productId);
+        if (gate == null) {
+            throw new IllegalStateException("Product is not admitted: " + productId);
+        }
+        gate.permits.release();
+        releaseReference(productId);
+    }
+
+    public int waiting(final Long productId) {
+        final Gate gate = gates.get(productId);
+        return gate == null ? 0 : gate.waiting.get();
+    }
+
+    private Gate acquireReference(final Long productId) {
+        return gates.compute(productId, (key, gate) -> {
+            final Gate referenced = gate == null ? new Gate(maxConcurrency) : gate;
+            referenced.references++;
+            return referenced;
+        });
+    }
+
+    private void releaseReference(final Long productId) {
+        gates.computeIfPresent(productId, (key, gate) -> --gate.references == 0 ? null : gate);
+    }
+
+    private static final class Gate {
+        private final Semaphore permits;
+
+        private final AtomicInteger waiting = new AtomicInteger();
+
+        // gates.compute 안에서만 변경된다.
+        private int references;
+
+        private Gate(final int maxConcurrency) {
+            this.permits = new Semaphore(maxConcurrency, true);
+        }
+    }
+}
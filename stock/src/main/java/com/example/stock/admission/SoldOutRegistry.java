@@ -0,0 +1,77 @@
+package com.example.stock.admission;
+
+import com.example.stock.cache.StockChangedEvent;
+import com.example.stock.repository.StockRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/*
+    품절된 상품 목록. 여기 올라간 상품의 감소 요청은 lock / DB 를 거치지 않고 바로 "Not enough stock" 으로 거절된다.
+
+    - 품절 표시: 남은 수량 0 이 알려졌을 때 (이 서버의 변경 또는 다른 서버의 stock-change 채널 메시지)
+    - 해제: 수량이 0 보다 큰 값으로 알려지거나, 수량을 모르는 변경(재입고, 예약 해제 등의 entity 변경)이 일어났을 때
+    다른 서버에서 재입고 알림을 놓치더라도 ttl 이 지나면 표시가 사라지므로 오래 거절되지 않는다.
+    다른 서버의 메시지는 순서가 보장되지 않으므로, 재입고 뒤에 늦게 도착한 품절 메시지는 DB 에서 남은 수량이 0 인지 확인한 뒤에만 표시한다.
+    이 서버의 카운터가 알린 품절은 StockChangePublisher 가 입고보다 늦게 알려진 값을 걸러 내므로 그대로 표시한다.
+ */
+@Component
+public class SoldOutRegistry {
+
+    // productId -> 표시가 만료되는 시각(nanoTime)
+    private final ConcurrentMap<Long, Long> soldOut = new ConcurrentHashMap<>();
+
+    private final StockRepository stockRepository;
+
+    private final long ttlNanos;
+
+    public SoldOutRegistry(final StockRepository stockRepository,
+                           @Value("${stock.admission.sold-out-ttl-ms:60000}") final long ttlMillis) {
+        this.stockRepository = stockRepository;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    public boolean isSoldOut(final Long productId) {
+        final Long expiresAt = soldOut.get(productId);
+        if (expiresAt == null) {
+            return false;
+        }
+        if (System.nanoTime() - expiresAt >= 0) {
+            soldOut.remove(productId, expiresAt);
+            return false;
+        }
+        return true;
+    }
+
+    public void markSoldOut(final Long productId) {
+        soldOut.put(productId, System.nanoTime() + ttlNanos);
+    }
+
+    public void clear(final Long productId) {
+        soldOut.remove(productId);
+    }
+
+    public int size() {
+        return soldOut.size();
+    }
+
+    @EventListener
+    public void onStockChanged(final StockChangedEvent event) {
+        if (!event.isSoldOut()) {
+            clear(event.getProductId());
+        } else if (!event.isRemote() || isSoldOutInDatabase(event.getProductId())) {
+            markSoldOut(event.getProductId());
+        } else {
+            clear(event.getProductId());
+        }
+    }
+
+    private boolean isSoldOutInDatabase(final Long productId) {
+        final Long quantity = stockRepository.findAvailableQuantity(productId);
+        return quantity != null && quantity == 0;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.stock.admission;
+
+import com.example.stock.cache.StockChangePublisher;
+import com.example.stock.hotkey.HotKeyDetector;
+import com.example.stock.service.StockQueryService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/*
+    모든 service / facade 의 decrease(productId, quantity) 앞에서
+    1. 품절 표시된 상품이면 lock / DB 없이 바로 거절하고
+    2. 상품별 admission control 을 통과한 요청만 실행한다.
+    품절이 아닌 요청은 모두 HotKeyDetector 에 요청 수로 기록한다. (admission control 에서 버려지는 요청 포함)
+    facade 가 안쪽 service 를 부르는 경우처럼 같은 스레드에서 다시 들어오면 바깥 호출에서 한 번만 적용한다.
+    트랜잭션 advice 보다 바깥에서 실행되므로 대기하는 동안 connection 을 잡지 않는다.
+
+    요청을 모아서 처리하는 facade(coalescing, 그리고 coalescing 으로 보낼 수 있는 adaptive) 는 제외한다.
+    동시 처리 수를 제한하면 한 배치에 모일 수 있는 요청 수도 그만큼으로 묶이기 때문이다.
+    adaptive 가 다른 방식으로 보낸 요청은 그 안쪽 service / facade 에서 적용된다.
+ */
+@Aspect
+@Component
+@Order(0)
+public class StockAdmissionAspect {
+
+    private static final String NOT_ENOUGH_STOCK = "Not enough stock";
+
+    private final ThreadLocal<Boolean> admitted = new ThreadLocal<>();
+
+    private final SoldOutRegistry soldOutRegistry;
+
+    private final ProductAdmissionControl admissionControl;
+
+    private final StockQueryService stockQueryService;
+
+    private final StockChangePublisher stockChangePublisher;
+
+    private final MeterRegistry meterRegistry;
+
+    private final HotKeyDetector hotKeyDetector;
+
+    public StockAdmissionAspect(final SoldOutRegistry soldOutRegistry,
+                                final ProductAdmissionControl admissionControl,
+                                final StockQueryService stockQueryService,
+                                final StockChangePublisher stockChangePublisher,
+                                final MeterRegistry meterRegistry,
+                                final HotKeyDetector hotKeyDetector) {
+        this.soldOutRegistry = soldOutRegistry;
+        this.admissionControl = admissionControl;
+        this.stockQueryService = stockQueryService;
+        this.stockChangePublisher = stockChangePublisher;
+        this.meterRegistry = meterRegistry;
+        this.hotKeyDetector = hotKeyDetector;
+    }
+
+    @Pointcut("(execution(* com.example.stock.service..*.decrease(Long, Long)) || " +
+            "execution(* com.example.stock.facade..*.decrease(Long, Long))) && " +
+            "!within(com.example.stock.facade.CoalescingStockFacade) && " +
+            "!within(com.example.stock.facade.AdaptiveStockFacade)")
+    public void stockDecrease() {
+    }
+
+    @Around("stockDecrease() && args(productId, quantity)")
+    public Object admit(final ProceedingJoinPoint joinPoint, final Long productId, final Long quantity) throws Throwable {
+        if (Boolean.TRUE.equals(admitted.get())) {
+            return joinPoint.proceed();
+        }
+
+        if (soldOutRegistry.isSoldOut(productId)) {
+            rejected("sold-out");
+            throw new IllegalArgumentException(NOT_ENOUGH_STOCK);
+        }
+        hotKeyDetector.recordRequest(productId);
+
+        try {
+            admissionControl.acquire(productId);
+        } catch (AdmissionRejectedException e) {
+            rejected("shed");
+            throw e;
+        }
+
+        admitted.set(Boolean.TRUE);
+        try {
+            return joinPoint.proceed();
+        } catch (IllegalArgumentException e) {
+            if (NOT_ENOUGH_STOCK.equals(e.getMessage())) {
+                detectSoldOut(productId);
+            }
+            throw e;
+        } finally {
+            admitted.remove();
+            admissionControl.release(productId);
+        }
+    }
+
+    // 요청 수량보다 적게 남은 것인지, 정말 0 인지 확인해서 품절이면 다른 서버에도 알린다.
+    private void detectSoldOut(final Long productId) {
+        try {
+            if (stockQueryService.isSoldOut(productId)) {
+                soldOutRegistry.markSoldOut(productId);
+                stockChangePublisher.changed(productId, 0L);
+            }
+        } catch (RuntimeException ignored) {
+            // 품절 판정은 최적화일 뿐이므로 실패해도 원래 예외를 그대로 던진다.
+        }
+    }
+
+    private void rejected(final String reason) {
+        meterRegistry.counter("stock.admission.rejections", "reason", reason).increment();
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.stock.cache;
+
+import com.example.stock.ledger.StockBalance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/*
+    재고 변경을 같은 서버(StockChangedEvent)와 다른 서버(Redis pub/sub 채널)에 알린다.
+    트랜잭션 안에서 호출되면 커밋된 뒤에 알리므로, 롤백된 변경이 캐시에 들어가거나
+    커밋 전의 값을 다른 스레드가 다시 읽어 캐시에 넣는 일이 없다.
+
+    카운터가 알린 수량은 계산된 순서와 알리는 순서가 다를 수 있다. (감소가 계산한 0 이 그 뒤의 입고보다 늦게 알려지는 경우)
+    그래서 version 이 있는 수량은 상품별로 마지막에 발행한 version 보다 클 때만 발행하고, 늦게 도착한 값은 버린다.
+
+    같은 서버의 이벤트는 바로 발행하고, Redis 채널 발행은 상품별로 마지막 값만 남겨 두었다가 전용 스레드가 보낸다.
+    감소 요청 스레드가 Redis round trip 을 기다리지 않고, Redis 가 느리거나 죽어도 감소 경로가 같이 멈추지 않는다.
+
+    채널 메시지 형식: {nodeId}:{productId}:{quantity} (quantity 를 모르면 빈 문자열)
+ */
+@Component
+public class StockChangePublisher {
+
+    private static final Logger log = LoggerFactory.getLogger(StockChangePublisher.class);
+
+    static final String CHANNEL = "stock-change";
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final RedisTemplate<String, String> redisTemplate;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    // 상품별로 마지막에 발행한 version
+    private final ConcurrentMap<Long, Long> publishedVersions = new ConcurrentHashMap<>();
+
+    // 아직 채널로 보내지 않은 상품별 마지막 메시지 본문(quantity). 상품마다 하나만 남는다.
+    private final ConcurrentMap<Long, String> unsent = new ConcurrentHashMap<>();
+
+    // unsent 에 새로 들어온 상품. 같은 상품은 보내기 전까지 한 번만 들어간다.
+    private final BlockingQueue<Long> dirty = new LinkedBlockingQueue<>();
+
+    private final Thread sender = new Thread(this::sendLoop, "stock-change-publisher");
+
+    private volatile boolean running = true;
+
+    public StockChangePublisher(final RedisTemplate<String, String> redisTemplate,
+                                final ApplicationEventPublisher eventPublisher,
+                                final RedisMessageListenerContainer listenerContainer) {
+        this.redisTemplate = redisTemplate;
+        this.eventPublisher = eventPublisher;
+
+        listenerContainer.addMessageListener(
+                (message, pattern) -> receive(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(CHANNEL));
+
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    // 남은 수량을 알고 있을 때
+    public void changed(final Long productId, final Long quantity) {
+        afterCommit(() -> publish(productId, quantity, null));
+    }
+
+    // 카운터가 계산한 잔량. 같은 상품의 더 새로운 잔량이 이미 발행되었으면 버린다.
+    public void changed(final Long productId, final StockBalance balance) {
+        afterCommit(() -> publishIfNewer(productId, balance));
+    }
+
+    // 남은 수량을 모를 때: 캐시를 비우고 다음 조회에서 다시 읽게 한다.
+    public void invalidate(final Long productId) {
+        afterCommit(() -> publish(productId, null, null));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        sender.interrupt();
+    }
+
+    private void publishIfNewer(final Long productId, final StockBalance balance) {
+        // 확인과 발행을 한 번에 해야 확인한 뒤에 끼어든 더 새로운 값보다 늦게 발행되지 않는다.
+        publishedVersions.compute(productId, (id, published) -> {
+            if (published != null && published >= balance.getVersion()) {
+                return published;
+            }
+            publish(productId, balance.getQuantity(), balance.getVersion());
+            return balance.getVersion();
+        });
+    }
+
+    private void publish(final Long productId, final Long quantity, final Long version) {
+        eventPublisher.publishEvent(new StockChangedEvent(productId, quantity, false, version));
+
+        if (unsent.put(productId, quantity == null ? "" : quantity.toString()) == null) {
+            dirty.offer(productId);
+        }
+    }
+
+    private void sendLoop() {
+        while (running) {
+            final Long productId;
+            try {
+                productId = dirty.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (productId == null) {
+                continue;
+            }
+
+            // remove 이후에 들어온 값은 put 이 null 을 반환하므로 다시 dirty 에 들어간다.
+            final String quantity = unsent.remove(productId);
+            if (quantity == null) {
+                continue;
+            }
+
+            try {
+                redisTemplate.convertAndSend(CHANNEL, nodeId + ":" + productId + ":" + quantity);
+            } catch (RuntimeException e) {
+                // 다른 서버의 캐시는 만료 시간이 지나면 맞춰진다.
+                log.warn("failed to publish stock change. productId={}", productId, e);
+            }
+        }
+    }
+
+    private void receive(final String message) {
+        final String[] parts = message.split(":", 3);
+        if (parts.length != 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+
+        try {
+            final Long productId = Long.valueOf(parts[1]);
+            final Long quantity = parts[2].isEmpty() ? null : Long.valueOf(parts[2]);
+            eventPublisher.publishEvent(new StockChangedEvent(productId, quantity, true));
+        } catch (NumberFormatException e) {
+            log.warn("malformed stock change message. message={}", message);
+        }
+    }
+
+    private static void afterCommit(final Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
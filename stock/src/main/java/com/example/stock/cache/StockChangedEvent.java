@@ -0,0 +1,50 @@
+package com.example.stock.cache;
+
+/*
+    상품의 재고가 바뀌었음을 알리는 이벤트.
+    quantity 를 아는 쪽은 남은 수량을 함께 싣고, 모르는 쪽(bulk UPDATE 등)은 null 로 보내서 캐시를 비우게 한다.
+    카운터(in-memory, ledger, redis-script) 가 알린 수량에는 version 이 있고, StockChangePublisher 가 더 오래된 version 을 걸러 낸다.
+ */
+public class StockChangedEvent {
+
+    private final Long productId;
+
+    private final Long quantity;
+
+    // 다른 서버에서 Redis 채널로 전달된 변경인지 여부
+    private final boolean remote;
+
+    // 상품별로 변경마다 커지는 순서. 모르면 null
+    private final Long version;
+
+    public StockChangedEvent(final Long productId, final Long quantity, final boolean remote) {
+        this(productId, quantity, remote, null);
+    }
+
+    public StockChangedEvent(final Long productId, final Long quantity, final boolean remote, final Long version) {
+        this.productId = productId;
+        this.quantity = quantity;
+        this.remote = remote;
+        this.version = version;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public Long getQuantity() {
+        return quantity;
+    }
+
+    public boolean isRemote() {
+        return remote;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public boolean isSoldOut() {
+        return quantity != null && quantity == 0;
+    }
+}
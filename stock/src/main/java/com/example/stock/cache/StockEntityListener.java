@@ -0,0 +1,31 @@
+package com.example.stock.cache;
+
+import com.example.stock.domain.Stock;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/*
+    JPA 로 Stock 이 바뀌는 모든 경로(비관적/낙관적 lock, named lock, 예약, flush/sync 등)에서 캐시를 비운다.
+    Hibernate 가 Spring bean container 로 생성하므로 생성자 주입을 받을 수 있다.
+    bulk UPDATE(@Modifying) 는 entity 를 거치지 않으므로 호출하는 쪽에서 StockChangePublisher 를 직접 불러야 한다.
+ */
+@Component
+public class StockEntityListener {
+
+    private final StockChangePublisher publisher;
+
+    public StockEntityListener(final StockChangePublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void changed(final Stock stock) {
+        // bucket 으로 나뉜 상품은 Stock.quantity 가 전체 수량이 아니므로 값 대신 무효화만 한다.
+        publisher.invalidate(stock.getProductId());
+    }
+}
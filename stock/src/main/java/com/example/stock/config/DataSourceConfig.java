@@ -0,0 +1,40 @@
+package com.example.stock.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/*
+    JPA 트랜잭션이 쓰는 기본 pool 과 MySQL named lock(GET_LOCK / RELEASE_LOCK) 전용 pool 을 나눈다.
+    named lock 은 잡고 있는 동안 connection 하나를 점유하므로, 같은 pool 을 쓰면 lock 을 기다리는 스레드가
+    business 트랜잭션이 쓸 connection 까지 가져가서 pool 이 고갈된다.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    @Bean
+    @Primary
+    @ConfigurationProperties("spring.datasource")
+    public DataSourceProperties dataSourceProperties() {
+        return new DataSourceProperties();
+    }
+
+    @Bean
+    @Primary
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSource(final DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    // 접속 정보는 기본 datasource 를 따르고, pool 설정만 stock.named-lock.datasource 에서 덮어쓴다.
+    @Bean
+    @ConfigurationProperties("stock.named-lock.datasource")
+    public HikariDataSource namedLockDataSource(final DataSourceProperties properties) {
+        final HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("named-lock");
+        return dataSource;
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.stock.controller;
+
+public class ErrorResponse {
+
+    private final String message;
+
+    public ErrorResponse(final String message) {
+        this.message = message;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.stock.controller;
+
+// 요청 값 자체가 잘못되었다. 재고 상태와 관계없이 다시 보내도 실패하므로 400 으로 응답한다.
+public class InvalidRequestException extends IllegalArgumentException {
+
+    public InvalidRequestException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.stock.controller;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class OrderRequest {
+
+    private List<Item> items = new ArrayList<>();
+
+    public List<Item> getItems() {
+        return items;
+    }
+
+    public void setItems(final List<Item> items) {
+        this.items = items;
+    }
+
+    // 같은 상품이 여러 줄로 들어오면 수량을 합친다.
+    public Map<Long, Long> toQuantities() {
+        if (items == null || items.isEmpty()) {
+            throw new InvalidRequestException("Empty order");
+        }
+        final Map<Long, Long> quantities = new LinkedHashMap<>();
+        for (final Item item : items) {
+            if (item.getProductId() == null || item.getQuantity() == null || item.getQuantity() <= 0) {
+                throw new InvalidRequestException("Invalid order item");
+            }
+            quantities.merge(item.getProductId(), item.getQuantity(), Long::sum);
+        }
+        return quantities;
+    }
+
+    public static class Item {
+
+        private Long productId;
+
+        private Long quantity;
+
+        public Item() {}
+
+        public Item(final Long productId, final Long quantity) {
+            this.productId = productId;
+            this.quantity = quantity;
+        }
+
+        public Long getProductId() {
+            return productId;
+        }
+
+        public void setProductId(final Long productId) {
+            this.productId = productId;
+        }
+
+        public Long getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(final Long quantity) {
+            this.quantity = quantity;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.stock.controller;
+
+public class ReservationRequest {
+
+    private Long productId;
+
+    private Long quantity;
+
+    private Long ttlSeconds = 600L;
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(final Long productId) {
+        this.productId = productId;
+    }
+
+    public Long getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(final Long quantity) {
+        this.quantity = quantity;
+    }
+
+    public Long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public void setTtlSeconds(final Long ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+    }
+}
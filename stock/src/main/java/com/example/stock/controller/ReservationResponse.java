@@ -0,0 +1,39 @@
+package com.example.stock.controller;
+
+import com.example.stock.domain.StockReservation;
+
+import java.time.Instant;
+
+public class ReservationResponse {
+
+    private final Long reservationId;
+
+    private final Long productId;
+
+    private final Long quantity;
+
+    private final Instant expiresAt;
+
+    public ReservationResponse(final StockReservation reservation) {
+        this.reservationId = reservation.getId();
+        this.productId = reservation.getProductId();
+        this.quantity = reservation.getQuantity();
+        this.expiresAt = reservation.getExpiresAt();
+    }
+
+    public Long getReservationId() {
+        return reservationId;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public Long getQuantity() {
+        return quantity;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.stock.controller;
+
+public class RestockRequest {
+
+    private Long quantity;
+
+    public Long getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(final Long quantity) {
+        this.quantity = quantity;
+    }
+}
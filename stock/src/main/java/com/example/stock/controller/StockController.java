@@ -0,0 +1,158 @@
+package com.example.stock.controller;
+
+import com.example.stock.facade.OrderStockFacade;
+import com.example.stock.importer.ImportFormat;
+import com.example.stock.importer.ImportMode;
+import com.example.stock.importer.ImportNotFoundException;
+import com.example.stock.importer.ImportProgress;
+import com.example.stock.importer.StockImportService;
+import com.example.stock.reservation.ReservationStateException;
+import com.example.stock.service.StockNotFoundException;
+import com.example.stock.service.StockQueryService;
+import com.example.stock.service.StockReservationService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.function.Function;
+
+@RestController
+@RequestMapping("/stocks")
+public class StockController {
+
+    private final OrderStockFacade orderStockFacade;
+
+    private final StockReservationService reservationService;
+
+    private final StockQueryService stockQueryService;
+
+    private final StockImportService stockImportService;
+
+    public StockController(final OrderStockFacade orderStockFacade,
+                           final StockReservationService reservationService,
+                           final StockQueryService stockQueryService,
+                           final StockImportService stockImportService) {
+        this.orderStockFacade = orderStockFacade;
+        this.reservationService = reservationService;
+        this.stockQueryService = stockQueryService;
+        this.stockImportService = stockImportService;
+    }
+
+    // near cache 를 거치는 조회. 품절 상품은 DB 를 읽지 않는다.
+    @GetMapping("/{productId}")
+    public ResponseEntity<StockResponse> getStock(@PathVariable final Long productId) {
+        return ResponseEntity.ok(new StockResponse(productId, stockQueryService.getQuantity(productId)));
+    }
+
+    // POST /stocks/orders?mode=pessimistic|redisson
+    @PostMapping("/orders")
+    public ResponseEntity<Void> decreaseOrder(@RequestBody final OrderRequest request,
+                                              @RequestParam(defaultValue = "pessimistic") final String mode) throws InterruptedException {
+        orderStockFacade.decrease(request.toQuantities(), lockMode(mode));
+        return ResponseEntity.ok().build();
+    }
+
+    @PostMapping("/{productId}/restock")
+    public ResponseEntity<Void> restock(@PathVariable final Long productId, @RequestBody final RestockRequest request) {
+        if (request.getQuantity() == null || request.getQuantity() <= 0) {
+            throw new InvalidRequestException("Invalid restock");
+        }
+        stockImportService.restock(productId, request.getQuantity());
+        return ResponseEntity.ok().build();
+    }
+
+    // POST /stocks/imports?format=csv|jsonl&mode=restock|replace (body 는 피드 그대로, 읽는 대로 반영한다)
+    @PostMapping("/imports")
+    public ResponseEntity<ImportProgress> importFeed(final HttpServletRequest request,
+                                                     @RequestParam(defaultValue = "csv") final String format,
+                                                     @RequestParam(defaultValue = "restock") final String mode) throws IOException {
+        final ImportFormat importFormat = parse("format", format, ImportFormat::from);
+        final ImportMode importMode = parse("mode", mode, ImportMode::from);
+        return ResponseEntity.ok(stockImportService.importFeed(request.getInputStream(), importFormat, importMode));
+    }
+
+    @GetMapping("/imports")
+    public ResponseEntity<Collection<ImportProgress>> getImports() {
+        return ResponseEntity.ok(stockImportService.getImports());
+    }
+
+    @GetMapping("/imports/{importId}")
+    public ResponseEntity<ImportProgress> getImport(@PathVariable final String importId) {
+        return ResponseEntity.ok(stockImportService.getImport(importId));
+    }
+
+    @PostMapping("/reservations")
+    public ResponseEntity<ReservationResponse> reserve(@RequestBody final ReservationRequest request) {
+        if (request.getProductId() == null || request.getQuantity() == null || request.getQuantity() <= 0
+                || request.getTtlSeconds() <= 0) {
+            throw new InvalidRequestException("Invalid reservation");
+        }
+        return ResponseEntity.ok(new ReservationResponse(reservationService.reserve(
+                request.getProductId(), request.getQuantity(), Duration.ofSeconds(request.getTtlSeconds()))));
+    }
+
+    @PostMapping("/reservations/{reservationId}/confirm")
+    public ResponseEntity<Void> confirm(@PathVariable final Long reservationId) {
+        reservationService.confirm(reservationId);
+        return ResponseEntity.ok().build();
+    }
+
+    @PostMapping("/reservations/{reservationId}/release")
+    public ResponseEntity<Void> release(@PathVariable final Long reservationId) {
+        reservationService.release(reservationId);
+        return ResponseEntity.ok().build();
+    }
+
+    private static OrderStockFacade.LockMode lockMode(final String mode) {
+        return parse("mode", mode, value -> OrderStockFacade.LockMode.valueOf(value.toUpperCase(Locale.ROOT)));
+    }
+
+    // 알 수 없는 enum 값 등 요청 parameter 를 해석하지 못하면 400 으로 응답한다.
+    private static <T> T parse(final String name, final String value, final Function<String, T> parser) {
+        try {
+            return parser.apply(value);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("Invalid " + name + ": " + value);
+        }
+    }
+
+    @ExceptionHandler(InvalidRequestException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidRequest(final InvalidRequestException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new ErrorResponse(e.getMessage()));
+    }
+
+    @ExceptionHandler({StockNotFoundException.class, ImportNotFoundException.class})
+    public ResponseEntity<ErrorResponse> handleNotFound(final IllegalArgumentException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ErrorResponse(e.getMessage()));
+    }
+
+    // 재고 부족
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<ErrorResponse> handleIllegalArgument(final IllegalArgumentException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(new ErrorResponse(e.getMessage()));
+    }
+
+    // 이미 confirm / release / 만료된 예약. 다시 시도해도 성공하지 않으므로 503 이 아니라 409 로 응답한다.
+    @ExceptionHandler(ReservationStateException.class)
+    public ResponseEntity<ErrorResponse> handleReservationState(final ReservationStateException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(new ErrorResponse(e.getMessage()));
+    }
+
+    // lock 획득 실패 / 대기열 거절
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<ErrorResponse> handleIllegalState(final IllegalStateException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(new ErrorResponse(e.getMessage()));
+    }
+}
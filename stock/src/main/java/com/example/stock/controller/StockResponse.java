@@ -0,0 +1,28 @@
+package com.example.stock.controller;
+
+public class StockResponse {
+
+    private final Long productId;
+
+    private final Long quantity;
+
+    private final boolean soldOut;
+
+    public StockResponse(final Long productId, final Long quantity) {
+        this.productId = productId;
+        this.quantity = quantity;
+        this.soldOut = quantity == 0;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public Long getQuantity() {
+        return quantity;
+    }
+
+    public boolean isSoldOut() {
+        return soldOut;
+    }
+}
@@ -1,12 +1,19 @@
 package com.example.stock.domain;
 
+import com.example.stock.cache.StockEntityListener;
+
 import javax.persistence.Version;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
 
 @Entity
+@EntityListeners(StockEntityListener.class)
+@Table(indexes = @Index(name = "uk_stock_product_id", columnList = "productId", unique = true))
 public class Stock {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -16,6 +23,12 @@ public class Stock {
 
     private Long quantity;
 
+    // 예약(reservation)으로 잡혀 있어 판매할 수 없는 수량
+    private Long reserved = 0L;
+
+    // 마지막으로 반영된 Redis lock 의 fencing token. 이보다 작은 token 을 가진 쓰기는 거절된다.
+    private Long fencingToken = 0L;
+
     public Stock() {}
 
     public Stock(Long productId, Long quantity) {
@@ -26,10 +39,22 @@ public class Stock {
     @Version
     private Long version;
 
+    public Long getProductId() {
+        return productId;
+    }
+
     public Long getQuantity() {
         return quantity;
     }
 
+    public Long getReserved() {
+        return reserved;
+    }
+
+    public Long getFencingToken() {
+        return fencingToken;
+    }
+
     public Long decrease(Long quantity) {
         if (this.quantity < quantity) {
             throw new IllegalArgumentException("Not enough stock");
@@ -38,4 +63,33 @@ public class Stock {
         this.quantity -= quantity;
         return this.quantity;
     }
+
+    public Long increase(Long quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity must not be negative");
+        }
+
+        this.quantity += quantity;
+        return this.quantity;
+    }
+
+    public void reserve(Long quantity) {
+        decrease(quantity);
+        this.reserved += quantity;
+    }
+
+    // 결제 완료: 잡아 둔 수량을 확정한다.
+    public void confirmReservation(Long quantity) {
+        if (this.reserved < quantity) {
+            throw new IllegalStateException("Not enough reserved stock");
+        }
+
+        this.reserved -= quantity;
+    }
+
+    // 결제 실패 / 만료: 잡아 둔 수량을 다시 판매 가능한 수량으로 돌려놓는다.
+    public void releaseReservation(Long quantity) {
+        confirmReservation(quantity);
+        this.quantity += quantity;
+    }
 }
@@ -0,0 +1,53 @@
+package com.example.stock.domain;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+/*
+    hot product 의 재고를 여러 row 로 나눠 담는 sub-bucket.
+    한 상품의 전체 수량은 Stock.quantity 와 모든 bucket 의 quantity 의 합이다.
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"productId", "bucketNo"}))
+public class StockBucket {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long productId;
+
+    private Integer bucketNo;
+
+    private Long quantity;
+
+    public StockBucket() {}
+
+    public StockBucket(Long productId, Integer bucketNo, Long quantity) {
+        this.productId = productId;
+        this.bucketNo = bucketNo;
+        this.quantity = quantity;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public Integer getBucketNo() {
+        return bucketNo;
+    }
+
+    public Long getQuantity() {
+        return quantity;
+    }
+
+    public void changeQuantity(Long quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Not enough stock");
+        }
+        this.quantity = quantity;
+    }
+}
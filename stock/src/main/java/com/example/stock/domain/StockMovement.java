@@ -0,0 +1,65 @@
+package com.example.stock.domain;
+
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.time.Instant;
+
+// 재고 변동 이력. insert 만 하고, compaction 이 Stock 에 반영한 행은 compacted 로 표시만 한다.
+@Entity
+@Table(indexes = {
+        @Index(columnList = "compacted, id"),
+        @Index(columnList = "productId, compacted")
+})
+public class StockMovement {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long productId;
+
+    // 감소는 음수, 입고는 양수
+    private Long quantity;
+
+    @Enumerated(EnumType.STRING)
+    private Type type;
+
+    private Instant createdAt;
+
+    private boolean compacted;
+
+    public StockMovement() {}
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public Long getQuantity() {
+        return quantity;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public boolean isCompacted() {
+        return compacted;
+    }
+
+    public enum Type {
+        DECREASE, RESTOCK
+    }
+}
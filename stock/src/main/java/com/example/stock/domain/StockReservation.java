@@ -0,0 +1,74 @@
+package com.example.stock.domain;
+
+import com.example.stock.reservation.ReservationStateException;
+
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.time.Instant;
+
+@Entity
+@Table(indexes = @Index(columnList = "status, expiresAt"))
+public class StockReservation {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long productId;
+
+    private Long quantity;
+
+    private Instant expiresAt;
+
+    @Enumerated(EnumType.STRING)
+    private Status status;
+
+    public StockReservation() {}
+
+    public StockReservation(Long productId, Long quantity, Instant expiresAt) {
+        this.productId = productId;
+        this.quantity = quantity;
+        this.expiresAt = expiresAt;
+        this.status = Status.HELD;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public Long getQuantity() {
+        return quantity;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isHeld() {
+        return status == Status.HELD;
+    }
+
+    public void changeStatus(Status status) {
+        if (this.status != Status.HELD) {
+            throw new ReservationStateException(this.status);
+        }
+        this.status = status;
+    }
+
+    public enum Status {
+        HELD, CONFIRMED, RELEASED, EXPIRED
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.stock.facade;
+
+import com.example.stock.adaptive.AdaptiveProperties;
+import com.example.stock.adaptive.ProductContention;
+import com.example.stock.adaptive.StockLockMode;
+import com.example.stock.hotkey.HotKeyDetector;
+import com.example.stock.hotkey.HotProductDetectedEvent;
+import com.example.stock.retry.OptimisticLockRetryExecutor;
+import com.example.stock.service.OptimisticLockStockService;
+import com.example.stock.service.PessimisticLockStockService;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/*
+    상품별 최근 경합 정도에 따라 optimistic / pessimistic / coalescing 중 하나로 요청을 보낸다.
+    충돌이 적은 상품은 lock 없이 optimistic 으로, 충돌이 잦은 hot product 는 pessimistic 이나 요청 병합으로 처리한다.
+    optimistic 모드에서 충돌이 나면 재시도하지 않고 그 요청만 pessimistic 으로 처리해서 재시도 폭주를 막는다.
+    HotKeyDetector 가 hot product 를 알리면 경합 통계가 쌓이기를 기다리지 않고 바로 모드를 올린다.
+ */
+@Component
+public class AdaptiveStockFacade {
+
+    private final OptimisticLockStockService optimisticLockStockService;
+
+    private final PessimisticLockStockService pessimisticLockStockService;
+
+    private final CoalescingStockFacade coalescingStockFacade;
+
+    private final AdaptiveProperties properties;
+
+    private final HotKeyDetector hotKeyDetector;
+
+    private final ConcurrentMap<Long, ProductContention> contentions = new ConcurrentHashMap<>();
+
+    public AdaptiveStockFacade(final OptimisticLockStockService optimisticLockStockService,
+                               final PessimisticLockStockService pessimisticLockStockService,
+                               final CoalescingStockFacade coalescingStockFacade,
+                               final AdaptiveProperties properties,
+                               final HotKeyDetector hotKeyDetector) {
+        this.optimisticLockStockService = optimisticLockStockService;
+        this.pessimisticLockStockService = pessimisticLockStockService;
+        this.coalescingStockFacade = coalescingStockFacade;
+        this.properties = properties;
+        this.hotKeyDetector = hotKeyDetector;
+    }
+
+    public void decrease(final Long productId, final Long quantity) throws InterruptedException {
+        final ProductContention contention = contentions.computeIfAbsent(productId,
+                key -> new ProductContention(properties, System.currentTimeMillis()));
+        final StockLockMode mode = contention.mode();
+
+        final long start = System.nanoTime();
+        contention.started(System.currentTimeMillis());
+        boolean conflict = false;
+        try {
+            switch (mode) {
+                case OPTIMISTIC:
+                    conflict = !tryOptimistic(productId, quantity);
+                    if (conflict) {
+                        hotKeyDetector.recordRetry(productId);
+                        pessimisticLockStockService.decrease(productId, quantity);
+                    }
+                    break;
+                case PESSIMISTIC:
+                    pessimisticLockStockService.decrease(productId, quantity);
+                    break;
+                case COALESCING:
+                    coalescingStockFacade.decrease(productId, quantity);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown mode: " + mode);
+            }
+        } finally {
+            contention.finished(System.currentTimeMillis(), System.nanoTime() - start,
+                    mode == StockLockMode.OPTIMISTIC, conflict);
+        }
+    }
+
+    public StockLockMode modeOf(final Long productId) {
+        final ProductContention contention = contentions.get(productId);
+        return contention == null ? StockLockMode.OPTIMISTIC : contention.mode();
+    }
+
+    /**
+     * 외부에서 감지한 hot product 를 경합 통계가 쌓이기 전에 미리 전환한다.
+     */
+    public void escalate(final Long productId, final StockLockMode mode, final String reason) {
+        final long now = System.currentTimeMillis();
+        final ProductContention contention = contentions.computeIfAbsent(productId, key -> new ProductContention(properties, now));
+        if (contention.mode().compareTo(mode) < 0) {
+            contention.force(mode, now, reason);
+        }
+    }
+
+    // 요청이 몰린 상품은 병합으로, 요청은 많지 않은데 lock 대기 / 재시도가 심한 상품은 pessimistic 으로 올린다.
+    @EventListener
+    public void onHotProductDetected(final HotProductDetectedEvent event) {
+        final StockLockMode mode = event.isContentionOnly() ? StockLockMode.PESSIMISTIC : StockLockMode.COALESCING;
+        escalate(event.getProductId(), mode, "hot product: " + event.getReason());
+    }
+
+    // 디버깅용: 추적 중인 상품별 모드와 경합 통계
+    public Map<Long, Map<String, Object>> describe() {
+        final long now = System.currentTimeMillis();
+        final Map<Long, Map<String, Object>> descriptions = new LinkedHashMap<>();
+        contentions.forEach((productId, contention) -> descriptions.put(productId, contention.describe(now)));
+        return descriptions;
+    }
+
+    public Map<String, Object> describe(final Long productId) {
+        final ProductContention contention = contentions.get(productId);
+        return contention == null ? null : contention.describe(System.currentTimeMillis());
+    }
+
+    // 최근 요청이 없고 기본 모드로 돌아온 상품은 추적을 멈춰서 메모리를 제한한다.
+    @Scheduled(fixedDelayString = "#{@adaptiveProperties.cleanupIntervalMillis}")
+    public void removeIdle() {
+        final long now = System.currentTimeMillis();
+        contentions.entrySet().removeIf(entry -> entry.getValue().isIdle(now));
+    }
+
+    private boolean tryOptimistic(final Long productId, final Long quantity) {
+        try {
+            optimisticLockStockService.decrease(productId, quantity);
+            return true;
+        } catch (RuntimeException e) {
+            if (OptimisticLockRetryExecutor.isConflict(e)) {
+                return false;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.stock.facade;
+
+import com.example.stock.service.PessimisticLockStockService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+    같은 상품에 대한 감소 요청을 짧은 시간 동안 모아서 하나의 트랜잭션(한 번의 row lock, 한 번의 UPDATE)으로 처리한다. (group commit)
+    큐에 요청을 넣은 스레드 중 하나가 combiner 가 되어 쌓인 요청을 한 번에 반영하고,
+    나머지 스레드는 자신의 요청 결과가 채워질 때까지 기다린다.
+    combiner 는 배치 하나만 반영하고 자리를 내놓는다. 요청이 계속 들어와도 한 스레드가 남의 요청만 처리하며 붙잡혀 있지 않는다.
+
+    상품별 큐는 요청을 넣었지만 아직 결과를 받지 못한 스레드가 있는 동안만 유지된다. (ProductLockManager 와 같은 참조 수 방식)
+ */
+@Component
+public class CoalescingStockFacade {
+
+    private final PessimisticLockStockService pessimisticLockStockService;
+
+    private final long windowMillis;
+
+    private final int maxBatchSize;
+
+    private final ConcurrentMap<Long, ProductQueue> queues = new ConcurrentHashMap<>();
+
+    public CoalescingStockFacade(final PessimisticLockStockService pessimisticLockStockService,
+                                 @Value("${stock.coalescing.window-ms:2}") final long windowMillis,
+                                 @Value("${stock.coalescing.max-batch-size:256}") final int maxBatchSize) {
+        this.pessimisticLockStockService = pessimisticLockStockService;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public void decrease(final Long productId, final Long quantity) throws InterruptedException {
+        final ProductQueue queue = acquireReference(productId);
+        try {
+            final DecreaseRequest request = new DecreaseRequest(quantity);
+            queue.pending.incrementAndGet();
+            queue.requests.add(request);
+
+            while (!request.result.isDone()) {
+                if (queue.combining.compareAndSet(false, true)) {
+                    try {
+                        combine(productId, queue);
+                    } finally {
+                        queue.combining.set(false);
+                    }
+                    continue;
+                }
+
+                // combiner 가 내 요청을 가져가지 못하고 끝났을 수 있으므로 잠깐 기다린 뒤 다시 combiner 자리를 노린다.
+                try {
+                    request.result.get(Math.max(windowMillis, 1), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException | ExecutionException ignored) {
+                }
+            }
+
+            await(request);
+        } finally {
+            releaseReference(productId);
+        }
+    }
+
+    // 현재 유지 중인 상품별 큐 수
+    public int size() {
+        return queues.size();
+    }
+
+    private void combine(final Long productId, final ProductQueue queue) throws InterruptedException {
+        // 이미 한 배치가 찰 만큼 쌓였으면 기다리지 않는다.
+        if (windowMillis > 0 && queue.pending.get() < maxBatchSize) {
+            Thread.sleep(windowMillis); // 같은 상품의 요청이 조금 더 쌓이도록 기다린다.
+        }
+
+        final List<DecreaseRequest> batch = new ArrayList<>();
+        DecreaseRequest next;
+        while (batch.size() < maxBatchSize && (next = queue.requests.poll()) != null) {
+            queue.pending.decrementAndGet();
+            batch.add(next);
+        }
+
+        if (!batch.isEmpty()) {
+            apply(productId, batch);
+        }
+    }
+
+    private void apply(final Long productId, final List<DecreaseRequest> batch) {
+        final List<Long> quantities = new ArrayList<>(batch.size());
+        batch.forEach(request -> quantities.add(request.quantity));
+
+        try {
+            final List<Boolean> results = pessimisticLockStockService.decreaseInOrder(productId, quantities);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result.complete(results.get(i));
+            }
+        } catch (RuntimeException e) {
+            batch.forEach(request -> request.result.completeExceptionally(e));
+        }
+    }
+
+    private void await(final DecreaseRequest request) throws InterruptedException {
+        final boolean success;
+        try {
+            success = request.result.get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+
+        if (!success) {
+            throw new IllegalArgumentException("Not enough stock");
+        }
+    }
+
+    private ProductQueue acquireReference(final Long productId) {
+        return queues.compute(productId, (key, queue) -> {
+            final ProductQueue referenced = queue == null ? new ProductQueue() : queue;
+            referenced.references++;
+            return referenced;
+        });
+    }
+
+    private void releaseReference(final Long productId) {
+        queues.computeIfPresent(productId, (key, queue) -> --queue.references == 0 ? null : queue);
+    }
+
+    private static class ProductQueue {
+        private final Queue<DecreaseRequest> requests = new ConcurrentLinkedQueue<>();
+        // ConcurrentLinkedQueue.size() 는 O(n) 이므로 쌓인 요청 수를 따로 센다.
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicBoolean combining = new AtomicBoolean();
+
+        // queues.compute 안에서만 변경된다.
+        private int references;
+    }
+
+    private static class DecreaseRequest {
+        private final Long quantity;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        private DecreaseRequest(final Long quantity) {
+            this.quantity = quantity;
+        }
+    }
+}
@@ -1,31 +1,86 @@
 package com.example.stock.facade;
 
+import com.example.stock.lock.LockLease;
+import com.example.stock.lock.ProductLockManager;
+import com.example.stock.metrics.StockMetrics;
+import com.example.stock.metrics.StrategyMetrics;
 import com.example.stock.repository.RedisRepository;
-import com.example.stock.service.StockNonSynchronizedService;
-import com.example.stock.service.StockService;
+import com.example.stock.service.AtomicUpdateStockService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 @Component
 public class LettuceLockStockFacade {
 
+    private static final Logger log = LoggerFactory.getLogger(LettuceLockStockFacade.class);
+
     private final RedisRepository redisRepository;
 
-    private final StockNonSynchronizedService stockService;
+    private final AtomicUpdateStockService stockService;
+
+    private final ProductLockManager productLockManager;
+
+    private final StrategyMetrics metrics;
 
-    public LettuceLockStockFacade(final RedisRepository redisRepository, final StockNonSynchronizedService stockService) {
+    public LettuceLockStockFacade(final RedisRepository redisRepository,
+                                  final AtomicUpdateStockService stockService,
+                                  final ProductLockManager productLockManager,
+                                  final StockMetrics stockMetrics) {
         this.redisRepository = redisRepository;
         this.stockService = stockService;
+        this.productLockManager = productLockManager;
+        this.metrics = stockMetrics.forStrategy("lettuce");
     }
 
     public void decrease(final Long productId, final Long quantity) throws InterruptedException {
-        while (!redisRepository.lock(productId)) {
-            Thread.sleep(100); // 부하를 줄여줘본다.
+        final long waitStart = System.nanoTime();
+        // 같은 서버에서는 한 스레드만 Redis lock 을 두고 경쟁한다.
+        productLockManager.lockInterruptibly(productId);
+        try {
+            // 고정 주기 spin 대신 해제 알림을 받아서 바로 다시 시도한다.
+            final LockLease lease = fenced(productId, redisRepository.lockAndWait(productId));
+            final long holdStart = metrics.lockAcquired(productId, waitStart);
+
+            try {
+                // watchdog 이 이미 연장에 실패했으면 쓰지 않는다.
+                // 확인한 뒤에 lease 가 만료되어도 fencing token 으로 DB 가 늦은 쓰기를 거절한다.
+                if (lease.isLost()) {
+                    throw new IllegalStateException("redis lock lease lost. productId=" + productId);
+                }
+                stockService.decreaseFenced(productId, quantity, lease.getFencingToken());
+                metrics.transactionCompleted(holdStart);
+            } catch (IllegalArgumentException e) {
+                metrics.rejected();
+                throw e;
+            } finally {
+                if (!redisRepository.unlock(lease)) {
+                    log.warn("redis lock was already released or taken over. productId={}", productId);
+                }
+                metrics.lockReleased(holdStart);
+            }
+        } finally {
+            productLockManager.unlock(productId);
+        }
+    }
+
+    // Redis 가 fencing token 번호를 잃었으면 DB 에 마지막으로 반영된 token 보다 큰 값부터 다시 발급받는다.
+    private LockLease fenced(final Long productId, final LockLease lease) {
+        if (lease.isFenced()) {
+            return lease;
         }
 
+        final LockLease fenced;
         try {
-            stockService.decrease(productId, quantity);
-        } finally {
-            redisRepository.unlock(productId);
+            fenced = redisRepository.issueFencingToken(lease, stockService.findFencingToken(productId));
+        } catch (RuntimeException e) {
+            // token 없이 lock 만 남겨 두지 않는다.
+            redisRepository.unlock(lease);
+            throw e;
+        }
+        if (fenced == null) {
+            throw new IllegalStateException("redis lock lease lost before a fencing token was issued. productId=" + productId);
         }
+        return fenced;
     }
 }
@@ -1,28 +1,58 @@
 package com.example.stock.facade;
 
-import com.example.stock.repository.NamedLockRepository;
+import com.example.stock.lock.NamedLockExecutor;
+import com.example.stock.lock.NamedLockTimeoutException;
+import com.example.stock.lock.ProductLockManager;
+import com.example.stock.metrics.StockMetrics;
+import com.example.stock.metrics.StrategyMetrics;
 import com.example.stock.service.NamedLockStockService;
 import org.springframework.stereotype.Component;
 
-// lettuce lock
+// named lock
 @Component
 public class NamedLockStockFacade {
 
-    private NamedLockRepository namedLockRepository;
+    private final NamedLockExecutor namedLockExecutor;
 
-    private NamedLockStockService namedLockStockService;
+    private final NamedLockStockService namedLockStockService;
 
-    public NamedLockStockFacade(final NamedLockRepository namedLockRepository, final NamedLockStockService namedLockStockService) {
-        this.namedLockRepository = namedLockRepository;
+    private final ProductLockManager productLockManager;
+
+    private final StrategyMetrics metrics;
+
+    public NamedLockStockFacade(final NamedLockExecutor namedLockExecutor,
+                                final NamedLockStockService namedLockStockService,
+                                final ProductLockManager productLockManager,
+                                final StockMetrics stockMetrics) {
+        this.namedLockExecutor = namedLockExecutor;
         this.namedLockStockService = namedLockStockService;
+        this.productLockManager = productLockManager;
+        this.metrics = stockMetrics.forStrategy("named");
     }
 
     public void decrease(Long id, Long quantity) {
+        final long waitStart = System.nanoTime();
+        // 같은 서버에서는 한 스레드만 GET_LOCK 을 두고 경쟁한다.
+        productLockManager.lock(id);
         try {
-            namedLockRepository.getLock(id.toString());
-            namedLockStockService.decrease(id, quantity);
+            // lock 은 전용 pool 의 connection 에서, 감소 트랜잭션은 기본 pool 의 connection 에서 처리된다.
+            namedLockExecutor.executeWithLock(id.toString(), () -> {
+                final long holdStart = metrics.lockAcquired(id, waitStart);
+                try {
+                    namedLockStockService.decrease(id, quantity);
+                    metrics.transactionCompleted(holdStart);
+                } finally {
+                    metrics.lockReleased(holdStart);
+                }
+            });
+        } catch (NamedLockTimeoutException e) {
+            metrics.timedOut();
+            throw e;
+        } catch (IllegalArgumentException e) {
+            metrics.rejected();
+            throw e;
         } finally {
-            namedLockRepository.releaseLock(id.toString());
+            productLockManager.unlock(id);
         }
     }
 }
@@ -1,5 +1,8 @@
 package com.example.stock.facade;
 
+import com.example.stock.metrics.StockMetrics;
+import com.example.stock.metrics.StrategyMetrics;
+import com.example.stock.retry.OptimisticLockRetryExecutor;
 import com.example.stock.service.OptimisticLockStockService;
 import org.springframework.stereotype.Service;
 
@@ -8,21 +11,32 @@ public class OptimisticLockStockFacade {
 
     private final OptimisticLockStockService optimisticLockStockService;
 
-    public OptimisticLockStockFacade(OptimisticLockStockService optimisticLockStockService) {
+    private final OptimisticLockRetryExecutor retryExecutor;
+
+    private final StrategyMetrics metrics;
+
+    public OptimisticLockStockFacade(final OptimisticLockStockService optimisticLockStockService,
+                                     final OptimisticLockRetryExecutor retryExecutor,
+                                     final StockMetrics stockMetrics) {
         this.optimisticLockStockService = optimisticLockStockService;
+        this.retryExecutor = retryExecutor;
+        this.metrics = stockMetrics.forStrategy("optimistic");
     }
 
     public void decrease(final Long id, final Long quantity) throws InterruptedException {
-        while (true) {
-            try {
-                optimisticLockStockService.decrease(id, quantity);
-                break;
-            } catch (Exception e) {
-                // retry
-                System.out.println("OPTIMISTIC LOCK VERSION CONFLICT !!!");
-                System.out.println(e.getMessage());
-                Thread.sleep(1);
-            }
+        try {
+            // version 충돌일 때만 backoff 후 재시도한다.
+            retryExecutor.execute(id, () -> {
+                final long start = System.nanoTime();
+                try {
+                    optimisticLockStockService.decrease(id, quantity);
+                } finally {
+                    metrics.transactionCompleted(start);
+                }
+            }, metrics);
+        } catch (IllegalArgumentException e) {
+            metrics.rejected();
+            throw e;
         }
     }
 }
@@ -0,0 +1,84 @@
+package com.example.stock.facade;
+
+import com.example.stock.hotkey.HotKeyDetector;
+import com.example.stock.service.OrderStockService;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+    주문 단위 재고 감소를 pessimistic lock 또는 Redisson 분산 lock 으로 처리한다.
+    분산 lock 도 productId 오름차순으로 잡고 역순으로 풀어서 주문끼리 deadlock 이 나지 않도록 한다.
+    분산 lock 은 leaseTime 없이 잡아서 처리하는 동안 Redisson watchdog 이 lease 를 연장하도록 한다.
+ */
+@Component
+public class OrderStockFacade {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderStockFacade.class);
+
+    private final OrderStockService orderStockService;
+
+    private final RedissonClient redissonClient;
+
+    private final HotKeyDetector hotKeyDetector;
+
+    public OrderStockFacade(final OrderStockService orderStockService,
+                            final RedissonClient redissonClient,
+                            final HotKeyDetector hotKeyDetector) {
+        this.orderStockService = orderStockService;
+        this.redissonClient = redissonClient;
+        this.hotKeyDetector = hotKeyDetector;
+    }
+
+    public void decrease(final Map<Long, Long> quantities, final LockMode mode) throws InterruptedException {
+        // 주문은 decrease(productId, quantity) 를 거치지 않으므로 admission aspect 대신 여기서 상품마다 기록한다.
+        quantities.keySet().forEach(hotKeyDetector::recordRequest);
+        switch (mode) {
+            case PESSIMISTIC:
+                orderStockService.decreaseAll(quantities);
+                return;
+            case REDISSON:
+                decreaseWithRedisson(quantities);
+                return;
+            default:
+                throw new IllegalArgumentException("Unsupported lock mode: " + mode);
+        }
+    }
+
+    private void decreaseWithRedisson(final Map<Long, Long> quantities) throws InterruptedException {
+        final Deque<RLock> acquired = new ArrayDeque<>();
+
+        try {
+            for (final Long productId : OrderStockService.sorted(quantities).keySet()) {
+                final RLock lock = redissonClient.getLock(productId.toString());
+                if (!lock.tryLock(30, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("redisson getLock timeout: " + productId);
+                }
+                acquired.push(lock);
+            }
+
+            orderStockService.decreaseAllWithoutLock(quantities);
+        } finally {
+            while (!acquired.isEmpty()) {
+                final RLock lock = acquired.pop();
+                // lease 를 잃은 lock 을 unlock 하면 IllegalMonitorStateException 이 원래 예외를 덮는다.
+                if (lock.isHeldByCurrentThread()) {
+                    lock.unlock();
+                } else {
+                    log.warn("redisson lock was already released. lock={}", lock.getName());
+                }
+            }
+        }
+    }
+
+    public enum LockMode {
+        PESSIMISTIC, REDISSON
+    }
+}
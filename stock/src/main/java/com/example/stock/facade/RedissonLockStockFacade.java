@@ -1,7 +1,9 @@
 package com.example.stock.facade;
 
+import com.example.stock.lock.ProductLockManager;
+import com.example.stock.metrics.StockMetrics;
+import com.example.stock.metrics.StrategyMetrics;
 import com.example.stock.service.StockNonSynchronizedService;
-import com.example.stock.service.StockService;
 import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
 import org.springframework.stereotype.Component;
@@ -15,27 +17,51 @@ public class RedissonLockStockFacade {
 
     private final StockNonSynchronizedService stockService;
 
-    public RedissonLockStockFacade(final RedissonClient redissonClient, final StockNonSynchronizedService stockService) {
+    private final ProductLockManager productLockManager;
+
+    private final StrategyMetrics metrics;
+
+    public RedissonLockStockFacade(final RedissonClient redissonClient,
+                                   final StockNonSynchronizedService stockService,
+                                   final ProductLockManager productLockManager,
+                                   final StockMetrics stockMetrics) {
         this.redissonClient = redissonClient;
         this.stockService = stockService;
+        this.productLockManager = productLockManager;
+        this.metrics = stockMetrics.forStrategy("redisson");
     }
 
     public void decrease(final Long productId, final Long quantity) throws InterruptedException {
         final RLock lock = redissonClient.getLock(productId.toString());
 
+        final long waitStart = System.nanoTime();
+        // 같은 서버의 대기 스레드는 로컬 lock 에서 기다리고, 한 스레드만 Redisson lock 을 두고 경쟁한다.
+        if (!productLockManager.tryLock(productId, 30, TimeUnit.SECONDS)) {
+            metrics.timedOut();
+            throw new IllegalStateException("local lock timeout: " + productId);
+        }
+
         try {
 //            boolean isAvailable = lock.tryLock(10, 1, TimeUnit.SECONDS);
-
             if (!lock.tryLock(30, 1, TimeUnit.SECONDS)) {
-                System.out.println("redisson getLock timeout");
-                return;
+                metrics.timedOut();
+                throw new IllegalStateException("redisson getLock timeout: " + productId);
             }
+            final long holdStart = metrics.lockAcquired(productId, waitStart);
 
-            stockService.decrease(productId, quantity);
-
+            try {
+                stockService.decrease(productId, quantity);
+                metrics.transactionCompleted(holdStart);
+            } catch (IllegalArgumentException e) {
+                metrics.rejected();
+                throw e;
+            } finally {
+                // unlock the lock object
+                lock.unlock();
+                metrics.lockReleased(holdStart);
+            }
         } finally {
-            // unlock the lock object
-            lock.unlock();
+            productLockManager.unlock(productId);
         }
     }
 }
@@ -0,0 +1,66 @@
+package com.example.stock.hotkey;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+    productId 별 빈도를 고정된 메모리(depth x width 개의 카운터)로 추정한다.
+    행마다 다른 hash 로 카운터 하나씩을 올리고, 추정치는 그중 가장 작은 값이다.
+    hash 충돌 때문에 실제보다 크게 나올 수는 있어도 작게 나오지는 않는다. (decay 제외)
+ */
+public class CountMinSketch {
+
+    private final int width;
+
+    private final int depth;
+
+    private final AtomicLongArray counters;
+
+    public CountMinSketch(final int width, final int depth) {
+        if (width < 1 || depth < 1) {
+            throw new IllegalArgumentException("Sketch width and depth must be positive");
+        }
+        this.width = width;
+        this.depth = depth;
+        this.counters = new AtomicLongArray(width * depth);
+    }
+
+    /**
+     * delta 만큼 올리고, 올린 뒤의 추정치를 반환한다.
+     */
+    public long add(final long key, final long delta) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.addAndGet(index(key, row), delta));
+        }
+        return estimate;
+    }
+
+    public long estimate(final long key) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(index(key, row)));
+        }
+        return estimate;
+    }
+
+    /**
+     * 모든 카운터를 절반으로 줄여서 오래된 요청의 비중을 낮춘다.
+     * 동시에 들어온 add 가 일부 사라질 수 있지만 빈도 추정에는 문제가 되지 않는다.
+     */
+    public void halve() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, counters.get(i) >> 1);
+        }
+    }
+
+    private int index(final long key, final int row) {
+        return row * width + (int) Long.remainderUnsigned(mix(key + row * 0x9E3779B97F4A7C15L), width);
+    }
+
+    // splitmix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
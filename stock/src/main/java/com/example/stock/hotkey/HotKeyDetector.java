@@ -0,0 +1,128 @@
+package com.example.stock.hotkey;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/*
+    모든 감소 경로의 요청 수와 경합(lock 대기 시간, 재시도 수)을 count-min sketch 로 모으고,
+    요청 수 / lock 대기 시간 / 재시도 수 기준으로 각각 상위 topK 개 상품만 후보로 따로 들고 있는다.
+    요청은 많지 않은데 경합만 심한 상품도 후보에 들어오고, 상품 수와 관계없이 메모리가 고정된다.
+    detect 주기마다 후보 중 기준을 넘은 상품을 HotProductDetectedEvent 로 알려서
+    latency 가 무너지기 전에 처리량이 높은 방식으로 옮길 수 있게 한다.
+ */
+@Component
+public class HotKeyDetector {
+
+    private final HotKeyProperties properties;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final CountMinSketch requests;
+
+    private final CountMinSketch lockWaitMicros;
+
+    private final CountMinSketch retries;
+
+    private final TopKCandidates requestCandidates;
+
+    private final TopKCandidates lockWaitCandidates;
+
+    private final TopKCandidates retryCandidates;
+
+    // 이미 이벤트를 보낸 hot product. 기준 아래로 내려가면 빠진다.
+    private final Set<Long> announced = ConcurrentHashMap.newKeySet();
+
+    public HotKeyDetector(final HotKeyProperties properties, final ApplicationEventPublisher eventPublisher) {
+        this.properties = properties;
+        this.eventPublisher = eventPublisher;
+        this.requests = new CountMinSketch(properties.getWidth(), properties.getDepth());
+        this.lockWaitMicros = new CountMinSketch(properties.getWidth(), properties.getDepth());
+        this.retries = new CountMinSketch(properties.getWidth(), properties.getDepth());
+        this.requestCandidates = new TopKCandidates(properties.getTopK());
+        this.lockWaitCandidates = new TopKCandidates(properties.getTopK());
+        this.retryCandidates = new TopKCandidates(properties.getTopK());
+    }
+
+    public void recordRequest(final Long productId) {
+        requestCandidates.offer(productId, requests.add(productId, 1));
+    }
+
+    public void recordLockWait(final Long productId, final long waitNanos) {
+        lockWaitCandidates.offer(productId, lockWaitMicros.add(productId, TimeUnit.NANOSECONDS.toMicros(waitNanos)));
+    }
+
+    public void recordRetry(final Long productId) {
+        retryCandidates.offer(productId, retries.add(productId, 1));
+    }
+
+    /**
+     * 요청 수가 많은 순서의 후보 목록. 경합 기준 후보도 함께 들어 있다.
+     */
+    public List<HotProduct> hottest() {
+        final Set<Long> productIds = new HashSet<>(requestCandidates.productIds());
+        productIds.addAll(lockWaitCandidates.productIds());
+        productIds.addAll(retryCandidates.productIds());
+
+        final List<HotProduct> hottest = new ArrayList<>(productIds.size());
+        productIds.forEach(productId -> hottest.add(estimate(productId)));
+        hottest.sort(Comparator.comparingLong(HotProduct::getRequests).reversed());
+        return hottest;
+    }
+
+    /**
+     * 후보가 아닌 상품도 sketch 에서 추정치를 읽을 수 있다.
+     */
+    public HotProduct estimate(final Long productId) {
+        return new HotProduct(productId, requests.estimate(productId),
+                TimeUnit.MICROSECONDS.toMillis(lockWaitMicros.estimate(productId)), retries.estimate(productId));
+    }
+
+    @Scheduled(fixedDelayString = "#{@hotKeyProperties.detectIntervalMillis}")
+    public void detect() {
+        final Set<Long> hotNow = new HashSet<>();
+        for (final HotProduct product : hottest()) {
+            final String reason = reasonOf(product);
+            if (reason == null) {
+                continue;
+            }
+
+            hotNow.add(product.getProductId());
+            if (announced.add(product.getProductId())) {
+                eventPublisher.publishEvent(new HotProductDetectedEvent(product, reason));
+            }
+        }
+        announced.retainAll(hotNow);
+    }
+
+    @Scheduled(fixedDelayString = "#{@hotKeyProperties.decayIntervalMillis}")
+    public void decay() {
+        requests.halve();
+        lockWaitMicros.halve();
+        retries.halve();
+        requestCandidates.halve();
+        lockWaitCandidates.halve();
+        retryCandidates.halve();
+    }
+
+    private String reasonOf(final HotProduct product) {
+        if (product.getRequests() >= properties.getRequestThreshold()) {
+            return "requests";
+        }
+        if (product.getLockWaitMillis() >= properties.getLockWaitMillisThreshold()) {
+            return "lock-wait";
+        }
+        if (product.getRetries() >= properties.getRetryThreshold()) {
+            return "retries";
+        }
+        return null;
+    }
+}
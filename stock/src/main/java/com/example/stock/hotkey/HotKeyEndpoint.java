@@ -0,0 +1,34 @@
+package com.example.stock.hotkey;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+// GET /actuator/hotproducts, /actuator/hotproducts/{productId}
+@Component
+@Endpoint(id = "hotproducts")
+public class HotKeyEndpoint {
+
+    private final HotKeyDetector hotKeyDetector;
+
+    public HotKeyEndpoint(final HotKeyDetector hotKeyDetector) {
+        this.hotKeyDetector = hotKeyDetector;
+    }
+
+    @ReadOperation
+    public List<Map<String, Object>> hottest() {
+        return hotKeyDetector.hottest().stream()
+                .map(HotProduct::describe)
+                .collect(Collectors.toList());
+    }
+
+    @ReadOperation
+    public Map<String, Object> product(@Selector final Long productId) {
+        return hotKeyDetector.estimate(productId).describe();
+    }
+}
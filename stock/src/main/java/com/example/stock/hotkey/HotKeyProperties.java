@@ -0,0 +1,97 @@
+package com.example.stock.hotkey;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/*
+    hot product 감지 설정.
+    sketch 의 카운터는 decayIntervalMillis 마다 절반으로 줄어들므로 아래 기준값은 "최근 몇 초 동안" 의 누적치에 가깝다.
+    HotKeyDetector 의 @Scheduled 가 "hotKeyProperties" 이름으로 주기를 읽으므로 @Component 로 등록한다.
+ */
+@Component
+@ConfigurationProperties(prefix = "stock.hot-key")
+public class HotKeyProperties {
+
+    // count-min sketch 의 행당 카운터 수 / 행(hash 함수) 수. 메모리는 width * depth * 3 개의 long 으로 고정된다.
+    private int width = 2048;
+
+    private int depth = 4;
+
+    // 추적할 상위 상품 수
+    private int topK = 20;
+
+    private long decayIntervalMillis = 5_000;
+
+    private long detectIntervalMillis = 1_000;
+
+    // 아래 중 하나라도 넘으면 hot product 로 판단한다.
+    private long requestThreshold = 1_000;
+
+    private long lockWaitMillisThreshold = 5_000;
+
+    private long retryThreshold = 200;
+
+    public int getWidth() {
+        return width;
+    }
+
+    public void setWidth(final int width) {
+        this.width = width;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public void setDepth(final int depth) {
+        this.depth = depth;
+    }
+
+    public int getTopK() {
+        return topK;
+    }
+
+    public void setTopK(final int topK) {
+        this.topK = topK;
+    }
+
+    public long getDecayIntervalMillis() {
+        return decayIntervalMillis;
+    }
+
+    public void setDecayIntervalMillis(final long decayIntervalMillis) {
+        this.decayIntervalMillis = decayIntervalMillis;
+    }
+
+    public long getDetectIntervalMillis() {
+        return detectIntervalMillis;
+    }
+
+    public void setDetectIntervalMillis(final long detectIntervalMillis) {
+        this.detectIntervalMillis = detectIntervalMillis;
+    }
+
+    public long getRequestThreshold() {
+        return requestThreshold;
+    }
+
+    public void setRequestThreshold(final long requestThreshold) {
+        this.requestThreshold = requestThreshold;
+    }
+
+    public long getLockWaitMillisThreshold() {
+        return lockWaitMillisThreshold;
+    }
+
+    public void setLockWaitMillisThreshold(final long lockWaitMillisThreshold) {
+        this.lockWaitMillisThreshold = lockWaitMillisThreshold;
+    }
+
+    public long getRetryThreshold() {
+        return retryThreshold;
+    }
+
+    public void setRetryThreshold(final long retryThreshold) {
+        this.retryThreshold = retryThreshold;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.stock.hotkey;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+    상품 하나의 최근 요청 수 / lock 대기 시간 / 재시도 수 추정치.
+ */
+public class HotProduct {
+
+    private final Long productId;
+
+    private final long requests;
+
+    private final long lockWaitMillis;
+
+    private final long retries;
+
+    public HotProduct(final Long productId, final long requests, final long lockWaitMillis, final long retries) {
+        this.productId = productId;
+        this.requests = requests;
+        this.lockWaitMillis = lockWaitMillis;
+        this.retries = retries;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public long getLockWaitMillis() {
+        return lockWaitMillis;
+    }
+
+    public long getRetries() {
+        return retries;
+    }
+
+    public Map<String, Object> describe() {
+        final Map<String, Object> description = new LinkedHashMap<>();
+        description.put("productId", productId);
+        description.put("requests", requests);
+        description.put("lockWaitMillis", lockWaitMillis);
+        description.put("retries", retries);
+        return description;
+    }
+}
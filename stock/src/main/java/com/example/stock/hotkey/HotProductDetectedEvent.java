@@ -0,0 +1,34 @@
+package com.example.stock.hotkey;
+
+/*
+    상품이 hot product 기준을 넘었을 때 한 번 발행된다. 기준 아래로 내려갔다가 다시 넘으면 다시 발행된다.
+    reason 은 넘은 기준(requests / lock-wait / retries) 이다.
+ */
+public class HotProductDetectedEvent {
+
+    private final HotProduct product;
+
+    private final String reason;
+
+    public HotProductDetectedEvent(final HotProduct product, final String reason) {
+        this.product = product;
+        this.reason = reason;
+    }
+
+    public Long getProductId() {
+        return product.getProductId();
+    }
+
+    public HotProduct getProduct() {
+        return product;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    // 요청이 몰린 것이 아니라 경합(lock 대기 / 재시도) 만 심한 경우
+    public boolean isContentionOnly() {
+        return !"requests".equals(reason);
+    }
+}
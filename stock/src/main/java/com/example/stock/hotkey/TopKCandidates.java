@@ -0,0 +1,66 @@
+package com.example.stock.hotkey;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/*
+    sketch 추정치가 큰 상위 topK 개 상품. 후보가 가득 차면 가장 작은 후보보다 큰 상품만 들어올 수 있다.
+ */
+class TopKCandidates {
+
+    private final int topK;
+
+    // productId -> 후보에 들어온 / 갱신된 시점의 추정치
+    private final ConcurrentMap<Long, Long> candidates = new ConcurrentHashMap<>();
+
+    // 후보가 가득 찼을 때 새 상품이 넘어야 하는 추정치. 이보다 작은 상품은 lock 없이 바로 무시한다.
+    private volatile long admissionThreshold;
+
+    TopKCandidates(final int topK) {
+        this.topK = topK;
+    }
+
+    void offer(final Long productId, final long estimate) {
+        if (candidates.replace(productId, estimate) != null) {
+            return;
+        }
+        if (candidates.size() >= topK && estimate <= admissionThreshold) {
+            return;
+        }
+
+        synchronized (candidates) {
+            if (candidates.replace(productId, estimate) != null) {
+                return;
+            }
+            if (candidates.size() >= topK) {
+                final Map.Entry<Long, Long> coldest = coldest();
+                if (estimate <= coldest.getValue()) {
+                    admissionThreshold = coldest.getValue();
+                    return;
+                }
+                candidates.remove(coldest.getKey());
+            }
+            candidates.put(productId, estimate);
+            if (candidates.size() >= topK) {
+                admissionThreshold = coldest().getValue();
+            }
+        }
+    }
+
+    void halve() {
+        candidates.replaceAll((productId, estimate) -> estimate >> 1);
+        admissionThreshold >>= 1;
+    }
+
+    Set<Long> productIds() {
+        return candidates.keySet();
+    }
+
+    private Map.Entry<Long, Long> coldest() {
+        return candidates.entrySet().stream()
+                .min(Map.Entry.comparingByValue())
+                .orElseThrow(IllegalStateException::new);
+    }
+}
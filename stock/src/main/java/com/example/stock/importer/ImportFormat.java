@@ -0,0 +1,18 @@
+package com.example.stock.importer;
+
+import java.util.Locale;
+
+public enum ImportFormat {
+    // productId,quantity (첫 줄이 숫자가 아니면 header 로 보고 건너뛴다)
+    CSV,
+    // {"productId": 1, "quantity": 10} 한 줄에 하나
+    JSONL;
+
+    public static ImportFormat from(final String value) {
+        try {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown import format: " + value);
+        }
+    }
+}
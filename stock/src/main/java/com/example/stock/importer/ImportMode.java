@@ -0,0 +1,18 @@
+package com.example.stock.importer;
+
+import java.util.Locale;
+
+public enum ImportMode {
+    // 입고: 기존 수량에 더한다. 판매 중인 상품에도 안전하다.
+    RESTOCK,
+    // 카탈로그 적재: 수량을 덮어쓴다. 그 사이의 감소가 사라지므로 판매 전 상품에만 사용한다.
+    REPLACE;
+
+    public static ImportMode from(final String value) {
+        try {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown import mode: " + value);
+        }
+    }
+}
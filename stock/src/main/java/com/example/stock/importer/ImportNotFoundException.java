@@ -0,0 +1,9 @@
+package com.example.stock.importer;
+
+// 진행 상황을 보관하지 않는 import id.
+public class ImportNotFoundException extends IllegalArgumentException {
+
+    public ImportNotFoundException(final String id) {
+        super("Import not found: " + id);
+    }
+}
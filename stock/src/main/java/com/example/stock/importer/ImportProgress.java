@@ -0,0 +1,119 @@
+package com.example.stock.importer;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 진행 중이거나 끝난 import 한 건의 진행 상황. 조회 API 에 그대로 JSON 으로 내보낸다.
+public class ImportProgress {
+
+    private static final int MAX_ERRORS = 20;
+
+    private final String id;
+
+    private final ImportFormat format;
+
+    private final ImportMode mode;
+
+    private final Instant startedAt = Instant.now();
+
+    private final AtomicLong lines = new AtomicLong();
+
+    private final AtomicLong imported = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final AtomicLong batches = new AtomicLong();
+
+    private final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+
+    private volatile Instant finishedAt;
+
+    private volatile String failure;
+
+    public ImportProgress(final String id, final ImportFormat format, final ImportMode mode) {
+        this.id = id;
+        this.format = format;
+        this.mode = mode;
+    }
+
+    void lineRead() {
+        lines.incrementAndGet();
+    }
+
+    void batchWritten(final int rows) {
+        imported.addAndGet(rows);
+        batches.incrementAndGet();
+    }
+
+    void rejected(final long lineNumber, final String reason) {
+        rejected.incrementAndGet();
+        if (errors.size() < MAX_ERRORS) {
+            errors.add("line " + lineNumber + ": " + reason);
+        }
+    }
+
+    void finished(final String failure) {
+        this.failure = failure;
+        this.finishedAt = Instant.now();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public ImportFormat getFormat() {
+        return format;
+    }
+
+    public ImportMode getMode() {
+        return mode;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public boolean isRunning() {
+        return finishedAt == null;
+    }
+
+    public String getFailure() {
+        return failure;
+    }
+
+    public long getLines() {
+        return lines.get();
+    }
+
+    public long getImported() {
+        return imported.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+
+    public List<String> getErrors() {
+        synchronized (errors) {
+            return new ArrayList<>(errors);
+        }
+    }
+
+    public double getRowsPerSecond() {
+        final Instant end = finishedAt != null ? finishedAt : Instant.now();
+        final long millis = Math.max(Duration.between(startedAt, end).toMillis(), 1);
+        return imported.get() * 1000.0 / millis;
+    }
+}
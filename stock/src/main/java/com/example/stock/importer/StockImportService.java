@@ -0,0 +1,340 @@
+package com.example.stock.importer;
+
+import com.example.stock.cache.StockChangePublisher;
+import com.example.stock.service.CounterStockService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/*
+    CSV / JSONL 재고 피드를 한 줄씩 읽어서 batchSize 개씩 JDBC batch upsert 한다.
+    - 한 번에 batch 하나만 메모리에 있으므로 피드 크기와 상관없이 메모리 사용량이 일정하다.
+    - batch 마다 짧은 트랜잭션으로 커밋하고, 다른 트랜잭션(주문의 여러 상품 lock 등)과 같은 productId 순서로 row lock 을 잡으므로
+      판매 중인 상품의 감소를 오래 막거나 deadlock 을 만들지 않는다.
+    - 커밋한 상품은 캐시와 품절 표시를 지우도록 StockChangePublisher 로 알린다.
+    in-memory / redis-script / ledger 처럼 잔량을 따로 적재해 둔 상품은 Stock row 대신 그 방식으로 입고한다.
+    그런 상품의 replace 는 적재된 잔량과 어긋나므로 반영하지 않고 rejected 로 센다.
+    bucket 으로 나뉜 상품(sharding) 과 compaction 되지 않은 movement 가 있는 상품(ledger) 의 replace 도 같은 이유로 거절한다.
+    replace 의 수량은 예약분을 포함한 재고로 보고, 판매 가능한 수량은 예약분을 뺀 값(0 미만이면 0)으로 둔다.
+ */
+@Service
+public class StockImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(StockImportService.class);
+
+    private static final String UPSERT_RESTOCK =
+            "insert into stock (product_id, quantity, reserved, fencing_token, version) values (?, ?, 0, 0, 0) " +
+            "on duplicate key update quantity = quantity + values(quantity), version = version + 1";
+
+    private static final String UPSERT_REPLACE =
+            "insert into stock (product_id, quantity, reserved, fencing_token, version) values (?, ?, 0, 0, 0) " +
+            "on duplicate key update quantity = greatest(values(quantity) - reserved, 0), version = version + 1";
+
+    private static final String LOCK_STOCK = "select product_id from stock where product_id in ";
+
+    private static final String SELECT_SHARDED = "select distinct product_id from stock_bucket where product_id in ";
+
+    private static final String SELECT_UNCOMPACTED =
+            "select distinct product_id from stock_movement where compacted = false and product_id in ";
+
+    // 끝난 import 는 이 시간 동안만 조회할 수 있다.
+    private static final Duration FINISHED_RETENTION = Duration.ofHours(1);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final StockChangePublisher stockChangePublisher;
+
+    private final List<CounterStockService> counterStockServices;
+
+    private final ObjectMapper objectMapper;
+
+    private final int batchSize;
+
+    private final long progressLogInterval;
+
+    private final ConcurrentMap<String, ImportProgress> imports = new ConcurrentHashMap<>();
+
+    public StockImportService(final JdbcTemplate jdbcTemplate,
+                              final TransactionTemplate transactionTemplate,
+                              final StockChangePublisher stockChangePublisher,
+                              final List<CounterStockService> counterStockServices,
+                              final ObjectMapper objectMapper,
+                              @Value("${stock.import.batch-size:1000}") final int batchSize,
+                              @Value("${stock.import.progress-log-interval:100000}") final long progressLogInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.stockChangePublisher = stockChangePublisher;
+        this.counterStockServices = counterStockServices;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.progressLogInterval = progressLogInterval;
+    }
+
+    /**
+     * 피드를 끝까지 읽어서 반영하고 최종 진행 상황을 반환한다.
+     * 형식이 잘못된 줄은 건너뛰고 rejected 로 센다. 실행 중에는 getImports 로 진행 상황을 볼 수 있다.
+     */
+    public ImportProgress importFeed(final InputStream feed, final ImportFormat format, final ImportMode mode) {
+        final Instant expired = Instant.now().minus(FINISHED_RETENTION);
+        imports.values().removeIf(previous -> !previous.isRunning() && previous.getFinishedAt().isBefore(expired));
+
+        final ImportProgress progress = new ImportProgress(UUID.randomUUID().toString(), format, mode);
+        imports.put(progress.getId(), progress);
+        log.info("stock import started. id={}, format={}, mode={}", progress.getId(), format, mode);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(feed, StandardCharsets.UTF_8))) {
+            final List<StockLine> batch = new ArrayList<>(batchSize);
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                progress.lineRead();
+
+                final StockLine stockLine;
+                try {
+                    stockLine = parse(line, lineNumber, format, mode);
+                } catch (IllegalArgumentException e) {
+                    // CSV 첫 줄의 header
+                    if (lineNumber == 1 && format == ImportFormat.CSV) {
+                        continue;
+                    }
+                    progress.rejected(lineNumber, e.getMessage());
+                    continue;
+                }
+
+                batch.add(stockLine);
+                if (batch.size() == batchSize) {
+                    write(batch, mode, progress);
+                }
+            }
+            write(batch, mode, progress);
+            progress.finished(null);
+        } catch (IOException e) {
+            progress.finished(e.getMessage());
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            progress.finished(e.getMessage());
+            throw e;
+        }
+
+        log.info("stock import finished. id={}, imported={}, rejected={}, rowsPerSecond={}",
+                progress.getId(), progress.getImported(), progress.getRejected(), (long) progress.getRowsPerSecond());
+        return progress;
+    }
+
+    /**
+     * 한 상품을 입고한다. 상품이 없으면 새로 만든다.
+     */
+    public void restock(final Long productId, final Long quantity) {
+        if (productId == null || quantity == null || quantity <= 0) {
+            throw new IllegalArgumentException("Invalid restock");
+        }
+        if (restockLoaded(productId, quantity)) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update(UPSERT_RESTOCK, productId, quantity);
+            stockChangePublisher.invalidate(productId);
+        });
+    }
+
+    public Collection<ImportProgress> getImports() {
+        return imports.values();
+    }
+
+    public ImportProgress getImport(final String id) {
+        final ImportProgress progress = imports.get(id);
+        if (progress == null) {
+            throw new ImportNotFoundException(id);
+        }
+        return progress;
+    }
+
+    private void write(final List<StockLine> batch, final ImportMode mode, final ImportProgress progress) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        batch.sort(Comparator.comparing(StockLine::getProductId));
+        final Map<Long, CounterStockService> loadedBy = findLoaded(batch);
+        final List<StockLine> rows = new ArrayList<>(batch.size());
+        int imported = 0;
+        for (final StockLine stockLine : batch) {
+            final CounterStockService counterStockService = loadedBy.get(stockLine.getProductId());
+            if (counterStockService == null) {
+                rows.add(stockLine);
+            } else if (mode == ImportMode.REPLACE) {
+                progress.rejected(stockLine.getLineNumber(), "stock is loaded by a counter strategy, replace is not supported");
+            } else if (counterStockService.restockIfLoaded(stockLine.getProductId(), stockLine.getQuantity())) {
+                imported++;
+            } else {
+                // 확인한 뒤에 적재가 풀렸다면 Stock row 에 반영한다.
+                rows.add(stockLine);
+            }
+        }
+
+        if (!rows.isEmpty()) {
+            final List<StockLine> written = transactionTemplate.execute(status -> {
+                final List<StockLine> writable = mode == ImportMode.REPLACE ? replaceable(rows, progress) : rows;
+                if (!writable.isEmpty()) {
+                    jdbcTemplate.batchUpdate(mode == ImportMode.RESTOCK ? UPSERT_RESTOCK : UPSERT_REPLACE,
+                            writable, writable.size(), (statement, stockLine) -> {
+                                statement.setLong(1, stockLine.getProductId());
+                                statement.setLong(2, stockLine.getQuantity());
+                            });
+                    writable.forEach(stockLine -> stockChangePublisher.invalidate(stockLine.getProductId()));
+                }
+                return writable;
+            });
+            imported += written == null ? 0 : written.size();
+        }
+
+        final long before = progress.getImported();
+        progress.batchWritten(imported);
+        if (before / progressLogInterval != progress.getImported() / progressLogInterval) {
+            log.info("stock import progress. id={}, imported={}, rejected={}, rowsPerSecond={}",
+                    progress.getId(), progress.getImported(), progress.getRejected(), (long) progress.getRowsPerSecond());
+        }
+        batch.clear();
+    }
+
+    /*
+        bucket 으로 나뉜 상품과 compaction 되지 않은 movement 가 있는 상품은 잔량이 Stock.quantity 밖에도 있으므로
+        quantity 만 덮어쓰면 잔량이 replace 한 값과 달라진다. 그런 줄은 반영하지 않고 rejected 로 센다.
+        shard() 와 같은 순서로 Stock row 를 먼저 잠가서, 확인한 뒤 upsert 하기 전에 bucket 으로 나뉘지 않게 한다.
+     */
+    private List<StockLine> replaceable(final List<StockLine> rows, final ImportProgress progress) {
+        final List<Long> productIds = rows.stream().map(StockLine::getProductId).collect(Collectors.toList());
+        final String in = productIds.stream().map(productId -> "?").collect(Collectors.joining(", ", "(", ")"));
+        final Object[] args = productIds.toArray();
+
+        jdbcTemplate.queryForList(LOCK_STOCK + in + " order by product_id for update", Long.class, args);
+        final Set<Long> sharded = new HashSet<>(jdbcTemplate.queryForList(SELECT_SHARDED + in, Long.class, args));
+        final Set<Long> uncompacted = new HashSet<>(jdbcTemplate.queryForList(SELECT_UNCOMPACTED + in, Long.class, args));
+
+        final List<StockLine> replaceable = new ArrayList<>(rows.size());
+        for (final StockLine stockLine : rows) {
+            if (sharded.contains(stockLine.getProductId())) {
+                progress.rejected(stockLine.getLineNumber(), "stock is sharded into buckets, replace is not supported");
+            } else if (uncompacted.contains(stockLine.getProductId())) {
+                progress.rejected(stockLine.getLineNumber(), "stock has uncompacted movements, replace is not supported");
+            } else {
+                replaceable.add(stockLine);
+            }
+        }
+        return replaceable;
+    }
+
+    // 잔량을 적재해 둔 방식이 있으면 그 방식으로 입고한다. 한 상품은 한 방식으로만 변경하므로 처음 반영한 곳에서 멈춘다.
+    private boolean restockLoaded(final Long productId, final Long quantity) {
+        for (final CounterStockService counterStockService : counterStockServices) {
+            if (counterStockService.restockIfLoaded(productId, quantity)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Map<Long, CounterStockService> findLoaded(final List<StockLine> batch) {
+        final List<Long> productIds = batch.stream().map(StockLine::getProductId).collect(Collectors.toList());
+        final Map<Long, CounterStockService> loadedBy = new HashMap<>();
+        for (final CounterStockService counterStockService : counterStockServices) {
+            counterStockService.findLoaded(productIds).forEach(productId -> loadedBy.putIfAbsent(productId, counterStockService));
+        }
+        return loadedBy;
+    }
+
+    private StockLine parse(final String line, final long lineNumber, final ImportFormat format, final ImportMode mode) {
+        final long productId;
+        final long quantity;
+
+        if (format == ImportFormat.CSV) {
+            final String[] fields = line.split(",");
+            if (fields.length < 2) {
+                throw new IllegalArgumentException("expected productId,quantity");
+            }
+            productId = parseLong(fields[0], "productId");
+            quantity = parseLong(fields[1], "quantity");
+        } else {
+            final JsonNode node;
+            try {
+                node = objectMapper.readTree(line);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("malformed json");
+            }
+            if (node == null || !node.path("productId").canConvertToLong() || !node.path("quantity").canConvertToLong()) {
+                throw new IllegalArgumentException("expected {\"productId\": number, \"quantity\": number}");
+            }
+            productId = node.get("productId").asLong();
+            quantity = node.get("quantity").asLong();
+        }
+
+        if (quantity < 0 || (mode == ImportMode.RESTOCK && quantity == 0)) {
+            throw new IllegalArgumentException("invalid quantity " + quantity);
+        }
+        return new StockLine(lineNumber, productId, quantity);
+    }
+
+    private static long parseLong(final String value, final String field) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid " + field + " '" + value.trim() + "'");
+        }
+    }
+
+    private static class StockLine {
+        private final long lineNumber;
+        private final long productId;
+        private final long quantity;
+
+        private StockLine(final long lineNumber, final long productId, final long quantity) {
+            this.lineNumber = lineNumber;
+            this.productId = productId;
+            this.quantity = quantity;
+        }
+
+        private long getLineNumber() {
+            return lineNumber;
+        }
+
+        private long getProductId() {
+            return productId;
+        }
+
+        private long getQuantity() {
+            return quantity;
+        }
+    }
+}
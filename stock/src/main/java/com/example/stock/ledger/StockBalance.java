@@ -0,0 +1,37 @@
+package com.example.stock.ledger;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+    남은 수량과 그 수량이 만들어진 순서(version).
+    같은 상품의 version 은 수량이 바뀔 때마다 1 씩 커지므로, 변경 알림이 늦게 도착해도 더 오래된 값인지 알 수 있다.
+    적재할 때는 현재 시각(μs) 에서 시작한다. 한 상품이 1μs 에 한 번보다 자주 바뀌지 않는 한,
+    버리고 다시 적재한 카운터의 version 도 앞선 카운터의 version 보다 크다.
+ */
+public final class StockBalance {
+
+    private final long quantity;
+
+    private final long version;
+
+    public StockBalance(final long quantity, final long version) {
+        this.quantity = quantity;
+        this.version = version;
+    }
+
+    public static long initialVersion() {
+        return TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    StockBalance add(final long delta) {
+        return new StockBalance(quantity + delta, version + 1);
+    }
+}
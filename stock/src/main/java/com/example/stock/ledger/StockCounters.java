@@ -0,0 +1,96 @@
+package com.example.stock.ledger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/*
+    productId 별 재고 수량을 JVM 메모리에 들고 있는 lock-free 카운터.
+    감소는 compareAndSet 루프로 처리하므로 synchronized / DB lock 없이도 Stock.decrease 와 같은
+    "Not enough stock" 불변식(수량이 음수가 되지 않음)을 지킨다.
+    수량과 version 을 하나의 StockBalance 로 바꾸므로, 반환된 version 의 순서가 곧 변경이 적용된 순서이다.
+ */
+public class StockCounters {
+
+    private final ConcurrentMap<Long, AtomicReference<StockBalance>> counters = new ConcurrentHashMap<>();
+
+    // 버린 카운터의 가장 큰 version. 다시 적재한 카운터는 이보다 큰 version 에서 시작한다.
+    private final AtomicLong discardedVersion = new AtomicLong();
+
+    /**
+     * 재고를 감소시키고 남은 수량을 반환한다.
+     * 카운터가 아직 없다면 loader 로 초기 수량을 한 번만 읽어 온다.
+     */
+    public StockBalance decrease(final Long productId, final Long quantity, final Function<Long, Long> loader) {
+        final AtomicReference<StockBalance> counter = load(productId, loader);
+
+        while (true) {
+            final StockBalance current = counter.get();
+            if (current.getQuantity() < quantity) {
+                throw new IllegalArgumentException("Not enough stock");
+            }
+
+            final StockBalance next = current.add(-quantity);
+            if (counter.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    public StockBalance increase(final Long productId, final Long quantity, final Function<Long, Long> loader) {
+        return load(productId, loader).updateAndGet(balance -> balance.add(quantity));
+    }
+
+    /**
+     * 카운터가 적재되어 있을 때만 수량을 늘리고 늘린 뒤의 잔량을 반환한다. 적재되어 있지 않으면 null.
+     * beforeIncrease 는 같은 상품의 적재(loader) 와 겹치지 않게 카운터를 늘리기 직전에 실행된다.
+     */
+    public StockBalance increaseIfPresent(final Long productId, final Long quantity, final Runnable beforeIncrease) {
+        final StockBalance[] increased = new StockBalance[1];
+        counters.computeIfPresent(productId, (id, counter) -> {
+            beforeIncrease.run();
+            increased[0] = counter.updateAndGet(balance -> balance.add(quantity));
+            return counter;
+        });
+        return increased[0];
+    }
+
+    public Long get(final Long productId) {
+        final AtomicReference<StockBalance> counter = counters.get(productId);
+        return counter == null ? null : counter.get().getQuantity();
+    }
+
+    public void put(final Long productId, final long quantity) {
+        discard(counters.put(productId, newCounter(quantity)));
+    }
+
+    public void putAll(final Map<Long, Long> quantities) {
+        quantities.forEach(this::put);
+    }
+
+    public void remove(final Long productId) {
+        discard(counters.remove(productId));
+    }
+
+    public void clear() {
+        counters.keySet().forEach(this::remove);
+    }
+
+    private AtomicReference<StockBalance> load(final Long productId, final Function<Long, Long> loader) {
+        return counters.computeIfAbsent(productId, id -> newCounter(loader.apply(id)));
+    }
+
+    private AtomicReference<StockBalance> newCounter(final long quantity) {
+        final long version = Math.max(StockBalance.initialVersion(), discardedVersion.get() + 1);
+        return new AtomicReference<>(new StockBalance(quantity, version));
+    }
+
+    private void discard(final AtomicReference<StockBalance> counter) {
+        if (counter != null) {
+            discardedVersion.accumulateAndGet(counter.get().getVersion(), Math::max);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.stock.ledger;
+
+import com.example.stock.domain.StockMovement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/*
+    stock_movement 에 insert 하는 단일 writer 스레드. (group commit)
+    호출한 스레드는 큐에 movement 를 넣고 CompletableFuture 로 커밋을 기다린다.
+    writer 는 이전 batch 를 쓰는 동안 쌓인 movement 를 한 번에 꺼내 JDBC batch insert 한 번, 커밋 한 번으로 기록한다.
+    큐가 가득 차면 받지 않고 RejectedExecutionException 으로 실패시킨다. (backpressure)
+ */
+public class StockMovementWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(StockMovementWriter.class);
+
+    private static final String INSERT_MOVEMENT =
+            "insert into stock_movement (product_id, quantity, type, created_at, compacted) values (?, ?, ?, ?, false)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int batchSize;
+
+    private final BlockingQueue<PendingMovement> queue;
+
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    public StockMovementWriter(final JdbcTemplate jdbcTemplate,
+                               final TransactionTemplate transactionTemplate,
+                               final int batchSize,
+                               final int queueCapacity) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.thread = new Thread(this::run, "stock-movement-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public CompletableFuture<Void> append(final Long productId, final long quantity, final StockMovement.Type type) {
+        final PendingMovement movement = new PendingMovement(productId, quantity, type);
+        if (!running || !queue.offer(movement)) {
+            movement.result.completeExceptionally(new RejectedExecutionException("Stock movement queue is full"));
+        }
+        return movement.result;
+    }
+
+    /**
+     * 새 movement 를 받지 않고, 이미 받은 movement 를 모두 기록한 뒤 종료한다.
+     */
+    public void shutdown() {
+        running = false;
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        final List<PendingMovement> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                final PendingMovement first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(final List<PendingMovement> batch) {
+        final Timestamp now = Timestamp.from(Instant.now());
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INSERT_MOVEMENT, batch, batch.size(), (statement, movement) -> {
+                        statement.setLong(1, movement.productId);
+                        statement.setLong(2, movement.quantity);
+                        statement.setString(3, movement.type.name());
+                        statement.setTimestamp(4, now);
+                    }));
+        } catch (RuntimeException e) {
+            log.warn("failed to write stock movements. movements={}", batch.size(), e);
+            batch.forEach(movement -> movement.result.completeExceptionally(e));
+            return;
+        }
+        batch.forEach(movement -> movement.result.complete(null));
+    }
+
+    private static class PendingMovement {
+        private final Long productId;
+        private final long quantity;
+        private final StockMovement.Type type;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        private PendingMovement(final Long productId, final long quantity, final StockMovement.Type type) {
+            this.productId = productId;
+            this.quantity = quantity;
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.stock.lock;
+
+/*
+    Redis lock 을 잡은 한 번의 소유 기간.
+    - token: 이 소유자만 알고 있는 값. unlock / 갱신은 key 의 값이 token 과 같을 때만 한다.
+    - fencingToken: lock 을 잡을 때마다 1 씩 커지는 번호. DB 쓰기에 함께 넘겨서, lease 가 만료된 뒤에
+      늦게 도착한 이전 소유자의 쓰기를 DB 가 거절하게 한다.
+      Redis 가 번호를 잃었으면 0 으로 lock 만 잡은 상태이고, DB 에 반영된 token 을 읽어 다시 발급받아야 한다.
+ */
+public class LockLease {
+
+    private final String key;
+
+    private final String token;
+
+    private final long fencingToken;
+
+    // watchdog 이 갱신에 실패했으면 다른 소유자가 lock 을 가져갔을 수 있다.
+    private volatile boolean lost;
+
+    public LockLease(final String key, final String token, final long fencingToken) {
+        this.key = key;
+        this.token = token;
+        this.fencingToken = fencingToken;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public long getFencingToken() {
+        return fencingToken;
+    }
+
+    public boolean isFenced() {
+        return fencingToken > 0;
+    }
+
+    public boolean isLost() {
+        return lost;
+    }
+
+    void markLost() {
+        this.lost = true;
+    }
+}
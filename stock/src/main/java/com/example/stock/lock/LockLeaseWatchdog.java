@@ -0,0 +1,62 @@
+package com.example.stock.lock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/*
+    잡고 있는 lease 를 주기적으로 연장하는 백그라운드 스레드.
+    연장에 실패한 lease 는 lost 로 표시하고 더 이상 연장하지 않는다. (이미 다른 소유자가 있을 수 있음)
+ */
+public class LockLeaseWatchdog {
+
+    private static final Logger log = LoggerFactory.getLogger(LockLeaseWatchdog.class);
+
+    private final Set<LockLease> leases = ConcurrentHashMap.newKeySet();
+
+    private final Predicate<LockLease> renewer;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "lock-lease-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public LockLeaseWatchdog(final Predicate<LockLease> renewer, final long intervalMillis) {
+        this.renewer = renewer;
+        scheduler.scheduleAtFixedRate(this::renewAll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void watch(final LockLease lease) {
+        leases.add(lease);
+    }
+
+    public void unwatch(final LockLease lease) {
+        leases.remove(lease);
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void renewAll() {
+        for (final LockLease lease : leases) {
+            try {
+                if (!renewer.test(lease)) {
+                    lease.markLost();
+                    leases.remove(lease);
+                    log.warn("lock lease lost before unlock. key={}, fencingToken={}", lease.getKey(), lease.getFencingToken());
+                }
+            } catch (RuntimeException e) {
+                // Redis 장애 시에는 lease 가 만료될 때까지 다음 주기에 다시 시도한다.
+                log.warn("failed to renew lock lease. key={}", lease.getKey(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.stock.lock;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/*
+    lock 해제 알림을 기다리는 같은 JVM 안의 스레드들을 key 별로 관리한다.
+    알림 하나에 대기 스레드 하나만 깨워서, 해제될 때마다 모든 대기자가 동시에 lock 을 시도하지 않도록 한다.
+    대기자가 없는 key 의 항목은 바로 제거되므로 메모리는 대기 중인 key 수만큼만 사용한다.
+ */
+public class LockReleaseSignals {
+
+    private final ConcurrentMap<String, Signal> signals = new ConcurrentHashMap<>();
+
+    public Signal register(final String key) {
+        return signals.compute(key, (k, signal) -> {
+            final Signal registered = signal == null ? new Signal() : signal;
+            registered.waiters++;
+            return registered;
+        });
+    }
+
+    public void unregister(final String key) {
+        signals.computeIfPresent(key, (k, signal) -> --signal.waiters == 0 ? null : signal);
+    }
+
+    public void signal(final String key) {
+        final Signal signal = signals.get(key);
+        if (signal != null) {
+            signal.signal();
+        }
+    }
+
+    public static final class Signal {
+
+        // signals.compute 안에서만 변경된다.
+        private int waiters;
+
+        private long generation;
+
+        private Signal() {
+        }
+
+        public synchronized long generation() {
+            return generation;
+        }
+
+        /**
+         * seenGeneration 이후에 해제 알림이 왔다면 true, timeout 이 지났다면 false 를 반환한다.
+         */
+        public synchronized boolean await(final long seenGeneration, final long timeoutMillis) throws InterruptedException {
+            if (generation == seenGeneration) {
+                wait(Math.max(timeoutMillis, 1));
+            }
+            return generation != seenGeneration;
+        }
+
+        private synchronized void signal() {
+            generation++;
+            notify();
+        }
+    }
+}
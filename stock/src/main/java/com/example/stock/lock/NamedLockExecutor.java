@@ -0,0 +1,129 @@
+package com.example.stock.lock;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/*
+    MySQL named lock 은 session(connection) 단위이므로 GET_LOCK 과 RELEASE_LOCK 을 반드시 같은 connection 에서 호출해야 한다.
+    전용 pool 에서 connection 하나를 꺼내 lock 을 잡고, action 을 실행한 뒤 같은 connection 으로 lock 을 풀고 반납한다.
+    action 안의 business 트랜잭션은 기본 pool 을 사용한다.
+    lock 을 풀었는지 확인하지 못한 connection 은 pool 로 돌려보내지 않고 버린다. session 이 끝나야 lock 이 풀리고,
+    그대로 반납하면 lock 을 쥔 connection 을 다른 요청이 재사용하게 된다.
+ */
+@Component
+public class NamedLockExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(NamedLockExecutor.class);
+
+    private static final String GET_LOCK = "select get_lock(?, ?)";
+
+    private static final String RELEASE_LOCK = "select release_lock(?)";
+
+    private final DataSource dataSource;
+
+    private final int timeoutSeconds;
+
+    public NamedLockExecutor(@Qualifier("namedLockDataSource") final DataSource dataSource,
+                             @Value("${stock.named-lock.timeout-seconds:10}") final int timeoutSeconds) {
+        this.dataSource = dataSource;
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    /**
+     * lockName 으로 named lock 을 잡고 action 을 실행한다.
+     * timeout 안에 lock 을 잡지 못하면 action 을 실행하지 않고 NamedLockTimeoutException 을 던진다.
+     */
+    public void executeWithLock(final String lockName, final Runnable action) {
+        try (Connection connection = dataSource.getConnection()) {
+            getLock(connection, lockName);
+            try {
+                action.run();
+            } catch (RuntimeException | Error e) {
+                releaseOrEvict(connection, lockName, e);
+                throw e;
+            }
+            releaseOrEvict(connection, lockName, null);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Named lock failed: " + lockName, e);
+        }
+    }
+
+    private void getLock(final Connection connection, final String lockName) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(GET_LOCK)) {
+            statement.setString(1, lockName);
+            statement.setInt(2, timeoutSeconds);
+
+            // 1: 획득, 0: timeout, NULL: 오류
+            final Integer result = queryInt(statement);
+            if (result == null) {
+                throw new IllegalStateException("GET_LOCK failed: " + lockName);
+            }
+            if (result != 1) {
+                throw new NamedLockTimeoutException(lockName, timeoutSeconds);
+            }
+        }
+    }
+
+    // action 이 실패했다면 해제 중 오류는 원래 예외에 덧붙이고, 성공했다면 connection 을 버린 뒤 기록만 한다.
+    private void releaseOrEvict(final Connection connection, final String lockName, final Throwable failure) {
+        try {
+            if (releaseLock(connection, lockName)) {
+                return;
+            }
+        } catch (SQLException | RuntimeException e) {
+            if (failure != null) {
+                failure.addSuppressed(e);
+            } else {
+                log.warn("RELEASE_LOCK failed. lockName={}", lockName, e);
+            }
+        }
+        evict(connection, lockName);
+    }
+
+    private boolean releaseLock(final Connection connection, final String lockName) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(RELEASE_LOCK)) {
+            statement.setString(1, lockName);
+
+            // 1: 해제, 0: 다른 session 이 잡고 있음, NULL: 존재하지 않는 lock
+            final Integer result = queryInt(statement);
+            if (result == null || result != 1) {
+                log.warn("RELEASE_LOCK did not release the lock. lockName={}, result={}", lockName, result);
+                return false;
+            }
+            return true;
+        }
+    }
+
+    private void evict(final Connection connection, final String lockName) {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                dataSource.unwrap(HikariDataSource.class).evictConnection(connection);
+            } else {
+                connection.abort(Runnable::run);
+            }
+            log.warn("Evicted named lock connection. lockName={}", lockName);
+        } catch (SQLException e) {
+            log.error("Failed to evict named lock connection. lockName={}", lockName, e);
+        }
+    }
+
+    private static Integer queryInt(final PreparedStatement statement) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery()) {
+            if (!resultSet.next()) {
+                return null;
+            }
+            final int value = resultSet.getInt(1);
+            return resultSet.wasNull() ? null : value;
+        }
+    }
+}
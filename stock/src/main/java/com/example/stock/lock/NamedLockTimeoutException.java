@@ -0,0 +1,8 @@
+package com.example.stock.lock;
+
+public class NamedLockTimeoutException extends IllegalStateException {
+
+    public NamedLockTimeoutException(final String lockName, final int timeoutSeconds) {
+        super("Named lock timeout: " + lockName + " (" + timeoutSeconds + "s)");
+    }
+}
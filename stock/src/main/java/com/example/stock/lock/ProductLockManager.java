@@ -0,0 +1,82 @@
+package com.example.stock.lock;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+    JVM 안에서 productId 별로 잡는 lock.
+    분산 lock(MySQL GET_LOCK, Redis) 앞에 두면 같은 서버의 스레드 중 한 스레드만 분산 lock 을 두고 경쟁하고,
+    나머지는 로컬에서 순서대로(fair) 넘겨받으므로 원격 lock 요청이 스레드 수만큼 늘어나지 않는다.
+
+    lock 항목은 잡고 있거나 기다리는 스레드가 있는 동안만 유지되고, 마지막 스레드가 풀면 바로 제거된다.
+    따라서 메모리는 상품 수가 아니라 동시에 처리 중인 상품 수에 비례한다.
+ */
+@Component
+public class ProductLockManager {
+
+    private final ConcurrentMap<Long, Entry> locks = new ConcurrentHashMap<>();
+
+    public void lock(final Long productId) {
+        acquireReference(productId).lock.lock();
+    }
+
+    public void lockInterruptibly(final Long productId) throws InterruptedException {
+        final Entry entry = acquireReference(productId);
+        try {
+            entry.lock.lockInterruptibly();
+        } catch (InterruptedException e) {
+            releaseReference(productId);
+            throw e;
+        }
+    }
+
+    public boolean tryLock(final Long productId, final long timeout, final TimeUnit unit) throws InterruptedException {
+        final Entry entry = acquireReference(productId);
+        boolean acquired = false;
+        try {
+            acquired = entry.lock.tryLock(timeout, unit);
+            return acquired;
+        } finally {
+            if (!acquired) {
+                releaseReference(productId);
+            }
+        }
+    }
+
+    public void unlock(final Long productId) {
+        final Entry entry = locks.get(productId);
+        if (entry == null) {
+            throw new IllegalMonitorStateException("Product is not locked: " + productId);
+        }
+        entry.lock.unlock();
+        releaseReference(productId);
+    }
+
+    // 현재 유지 중인 lock 항목 수
+    public int size() {
+        return locks.size();
+    }
+
+    private Entry acquireReference(final Long productId) {
+        return locks.compute(productId, (key, entry) -> {
+            final Entry referenced = entry == null ? new Entry() : entry;
+            referenced.references++;
+            return referenced;
+        });
+    }
+
+    private void releaseReference(final Long productId) {
+        locks.computeIfPresent(productId, (key, entry) -> --entry.references == 0 ? null : entry);
+    }
+
+    private static final class Entry {
+        private final ReentrantLock lock = new ReentrantLock(true);
+
+        // locks.compute 안에서만 변경된다.
+        private int references;
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.stock.lock;
+
+// lease 가 만료된 뒤의 쓰기. 그 사이 다른 소유자가 더 큰 fencing token 으로 쓰기를 반영했다.
+public class StaleLockException extends IllegalStateException {
+
+    public StaleLockException(final Long productId, final long fencingToken, final long currentFencingToken) {
+        super("Stale lock fencing token: productId=" + productId
+                + ", fencingToken=" + fencingToken + ", current=" + currentFencingToken);
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.stock.metrics;
+
+import com.example.stock.hotkey.HotKeyDetector;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/*
+    재고 감소 전략별 meter 를 만들어 둔다.
+    각 서비스 / facade 는 생성 시점에 forStrategy 로 자신의 StrategyMetrics 를 받아 필드로 들고 있으므로
+    요청마다 meter 를 조회하거나 tag 를 만드는 비용이 없다.
+    상품별 lock 대기 시간과 재시도는 tag 로 나누지 않고 HotKeyDetector 의 sketch 로 보낸다.
+ */
+@Component
+public class StockMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    private final HotKeyDetector hotKeyDetector;
+
+    private final ConcurrentMap<String, StrategyMetrics> strategies = new ConcurrentHashMap<>();
+
+    public StockMetrics(final MeterRegistry meterRegistry, final HotKeyDetector hotKeyDetector) {
+        this.meterRegistry = meterRegistry;
+        this.hotKeyDetector = hotKeyDetector;
+    }
+
+    public StrategyMetrics forStrategy(final String strategy) {
+        return strategies.computeIfAbsent(strategy, name -> new StrategyMetrics(meterRegistry, hotKeyDetector, name));
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.stock.metrics;
+
+import com.example.stock.hotkey.HotKeyDetector;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+    하나의 전략(strategy tag)에 대한 timer / counter 묶음.
+    시간은 System.nanoTime() 으로 잰 시작 시점을 넘겨받아 기록한다.
+ */
+public class StrategyMetrics {
+
+    private final Timer lockWait;
+
+    private final Timer lockHold;
+
+    private final Timer transaction;
+
+    private final Counter retries;
+
+    private final Counter timeouts;
+
+    private final Counter rejections;
+
+    private final HotKeyDetector hotKeyDetector;
+
+    StrategyMetrics(final MeterRegistry meterRegistry, final HotKeyDetector hotKeyDetector, final String strategy) {
+        this.hotKeyDetector = hotKeyDetector;
+        this.lockWait = Timer.builder("stock.lock.wait")
+                .description("time spent waiting to acquire the stock lock")
+                .tag("strategy", strategy)
+                .register(meterRegistry);
+        this.lockHold = Timer.builder("stock.lock.hold")
+                .description("time the stock lock was held")
+                .tag("strategy", strategy)
+                .register(meterRegistry);
+        this.transaction = Timer.builder("stock.transaction")
+                .description("time spent in the stock decrease transaction")
+                .tag("strategy", strategy)
+                .register(meterRegistry);
+        this.retries = Counter.builder("stock.retries")
+                .description("stock decrease retries")
+                .tag("strategy", strategy)
+                .register(meterRegistry);
+        this.timeouts = Counter.builder("stock.lock.timeouts")
+                .description("stock lock acquisitions or retries given up by timeout")
+                .tag("strategy", strategy)
+                .register(meterRegistry);
+        this.rejections = Counter.builder("stock.rejections")
+                .description("stock decreases rejected for insufficient stock")
+                .tag("strategy", strategy)
+                .register(meterRegistry);
+    }
+
+    /**
+     * lock 대기 시간을 기록하고, lock 보유 시간 측정을 위한 현재 시각을 반환한다.
+     */
+    public long lockAcquired(final Long productId, final long waitStartNanos) {
+        final long now = System.nanoTime();
+        lockWait.record(now - waitStartNanos, TimeUnit.NANOSECONDS);
+        hotKeyDetector.recordLockWait(productId, now - waitStartNanos);
+        return now;
+    }
+
+    public void lockReleased(final long holdStartNanos) {
+        lockHold.record(System.nanoTime() - holdStartNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void transactionCompleted(final long startNanos) {
+        transaction.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void retried(final Long productId) {
+        retries.increment();
+        hotKeyDetector.recordRetry(productId);
+    }
+
+    public void timedOut() {
+        timeouts.increment();
+    }
+
+    public void rejected() {
+        rejections.increment();
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.stock.partition;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/*
+    productId 를 해시해서 항상 같은 단일 스레드 partition 에서 실행한다. (actor / mailbox 방식)
+    같은 상품에 대한 작업은 한 스레드에서 순서대로 처리되므로 lock 없이 직렬화된다.
+    mailbox 는 크기가 정해진 큐이고, 가득 차면 작업을 받지 않고 RejectedExecutionException 으로 실패시킨다. (backpressure)
+ */
+public class ProductPartitionExecutor {
+
+    private final ThreadPoolExecutor[] partitions;
+
+    public ProductPartitionExecutor(final String name, final int partitionCount, final int mailboxCapacity) {
+        this.partitions = new ThreadPoolExecutor[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(mailboxCapacity),
+                    threadFactory(name + "-" + i),
+                    new ThreadPoolExecutor.AbortPolicy());
+        }
+    }
+
+    public <T> CompletableFuture<T> submit(final Long productId, final Supplier<T> task) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            partitionOf(productId).execute(() -> {
+                try {
+                    result.complete(task.get());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    public int partitionCount() {
+        return partitions.length;
+    }
+
+    public int pendingTasks(final Long productId) {
+        return partitionOf(productId).getQueue().size();
+    }
+
+    public void shutdown() {
+        for (final ThreadPoolExecutor partition : partitions) {
+            partition.shutdown();
+        }
+    }
+
+    private ThreadPoolExecutor partitionOf(final Long productId) {
+        final int hash = Long.hashCode(productId);
+        return partitions[Math.floorMod(hash ^ (hash >>> 16), partitions.length)];
+    }
+
+    private static ThreadFactory threadFactory(final String name) {
+        return runnable -> {
+            final Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.stock.repository;
+
+import com.example.stock.domain.Stock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface AtomicUpdateStockRepository extends JpaRepository<Stock, Long> {
+
+    /*
+        조회 없이 조건부 UPDATE 한 번으로 감소시킨다. (quantity >= 요청 수량 인 경우에만 반영)
+        반영된 row 수가 0 이면 재고가 부족한 것이다.
+        version 도 함께 올려서 Optimistic Lock 으로 읽어 둔 엔티티가 변경을 감지할 수 있도록 한다.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Stock s set s.quantity = s.quantity - :quantity, s.version = s.version + 1 " +
+            "where s.productId = :productId and s.quantity >= :quantity")
+    int decrease(@Param("productId") Long productId, @Param("quantity") Long quantity);
+
+    /*
+        lock 의 fencing token 이 마지막으로 반영된 token 이상일 때만 감소시킨다.
+        lease 가 만료된 뒤에 늦게 도착한 이전 소유자의 쓰기는 0 row 로 거절된다.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Stock s set s.quantity = s.quantity - :quantity, s.fencingToken = :fencingToken, " +
+            "s.version = s.version + 1 " +
+            "where s.productId = :productId and s.quantity >= :quantity and s.fencingToken <= :fencingToken")
+    int decreaseFenced(@Param("productId") Long productId,
+                       @Param("quantity") Long quantity,
+                       @Param("fencingToken") Long fencingToken);
+
+    // 마지막으로 반영된 fencing token. Redis 의 token 번호를 잃었을 때 이 값부터 다시 센다.
+    @Query("select s.fencingToken from Stock s where s.productId = :productId")
+    Long findFencingToken(@Param("productId") Long productId);
+
+    Stock getByProductId(Long productId);
+}
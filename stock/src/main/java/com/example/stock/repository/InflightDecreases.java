@@ -0,0 +1,33 @@
+package com.example.stock.repository;
+
+import java.util.Collections;
+import java.util.Map;
+
+/*
+    sync 가 pending hash 에서 꺼내 DB 에 반영하고 있는 감소분 한 묶음.
+    batchId({꺼낸 서버}:{순번}) 와 꺼낸 시각이 Redis 에 함께 기록되어 있어서,
+    꺼낸 서버가 반영을 끝내지 못하고 죽어도 timeout 이 지나면 다른 서버가 pending 으로 되돌릴 수 있다.
+ */
+public class InflightDecreases {
+
+    private final String batchId;
+
+    private final Map<Long, Long> decreases;
+
+    public InflightDecreases(final String batchId, final Map<Long, Long> decreases) {
+        this.batchId = batchId;
+        this.decreases = Collections.unmodifiableMap(decreases);
+    }
+
+    public String getBatchId() {
+        return batchId;
+    }
+
+    public Map<Long, Long> getDecreases() {
+        return decreases;
+    }
+
+    public boolean isEmpty() {
+        return decreases.isEmpty();
+    }
+}
@@ -1,15 +0,0 @@
-package com.example.stock.repository;
-
-import com.example.stock.domain.Stock;
-import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Query;
-
-// lettuce lock
-public interface NamedLockRepository extends JpaRepository<Stock, Long> {
-
-    @Query(value = "select get_lock(:key, 1000)", nativeQuery = true)
-    void getLock(String key);
-
-    @Query(value = "select release_lock(:key)", nativeQuery = true)
-    void releaseLock(String key);
-}
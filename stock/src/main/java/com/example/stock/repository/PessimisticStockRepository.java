@@ -6,8 +6,9 @@ import org.springframework.data.jpa.repository.Lock;
 
 import javax.persistence.LockModeType;
 
-public interface PessimisticStockRepository extends JpaRepository<Stock, Long> {
+public interface PessimisticStockRepository extends JpaRepository<Stock, Long>, PessimisticStockRepositoryCustom {
 
+    // productId unique index 로 잠근다. 가능하면 PK 로 잠그는 lockByProductId 를 사용한다.
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     Stock getByProductId(Long productId);
-}
\ No newline at end of file
+}
@@ -0,0 +1,14 @@
+package com.example.stock.repository;
+
+import com.example.stock.domain.Stock;
+
+public interface PessimisticStockRepositoryCustom {
+
+    /*
+        productId 를 primary key 로 바꾼 뒤 PK 로 row lock 을 잡는다.
+        unique index 가 있더라도 secondary index 로 잠그면 index record 와 clustered record 를 모두 잠그고,
+        lock 을 기다리는 동안 index 탐색도 다시 해야 하므로 PK 로 잠그는 쪽이 lock 범위와 비용이 작다.
+        트랜잭션 안에서 호출해야 한다. 상품이 없으면 null
+     */
+    Stock lockByProductId(Long productId);
+}
@@ -0,0 +1,36 @@
+package com.example.stock.repository;
+
+import com.example.stock.domain.Stock;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+
+class PessimisticStockRepositoryImpl implements PessimisticStockRepositoryCustom {
+
+    private final EntityManager entityManager;
+
+    private final StockIdResolver stockIdResolver;
+
+    PessimisticStockRepositoryImpl(final EntityManager entityManager, final StockIdResolver stockIdResolver) {
+        this.entityManager = entityManager;
+        this.stockIdResolver = stockIdResolver;
+    }
+
+    @Override
+    public Stock lockByProductId(final Long productId) {
+        // 캐시된 id 가 오래된 것이라면 한 번 다시 찾는다.
+        for (int attempt = 0; attempt < 2; attempt++) {
+            final Long id = stockIdResolver.resolve(productId);
+            if (id == null) {
+                return null;
+            }
+
+            final Stock stock = entityManager.find(Stock.class, id, LockModeType.PESSIMISTIC_WRITE);
+            if (stock != null && productId.equals(stock.getProductId())) {
+                return stock;
+            }
+            stockIdResolver.evict(productId);
+        }
+        return null;
+    }
+}
@@ -1,32 +1,188 @@
 package com.example.stock.repository;
 
+import com.example.stock.lock.LockLease;
+import com.example.stock.lock.LockLeaseWatchdog;
+import com.example.stock.lock.LockReleaseSignals;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Component;
 
-import java.time.Duration;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
+/*
+    소유자 token 을 값으로 저장하는 짧은 lease 방식의 Redis lock.
+    unlock / 갱신은 값이 자신의 token 과 같을 때만 하므로 다른 소유자의 lock 을 지우지 않는다.
+    lease 는 짧게(기본 300ms) 두고 watchdog 이 잡고 있는 동안 주기적으로 연장하므로,
+    소유자가 죽으면 lease 시간 안에 다음 대기자가 lock 을 가져간다.
+    fencing token 번호는 Redis 에 있으므로 failover / eviction 으로 사라질 수 있다.
+    번호가 없으면 fencing token 없이 lock 만 잡은 lease 를 돌려준다. 호출한 쪽이 DB 에 마지막으로 반영된 token 을 읽어
+    issueFencingToken 으로 그보다 큰 값부터 다시 발급받는다.
+ */
 @Component
 public class RedisRepository {
 
+    private static final String RELEASE_CHANNEL_PREFIX = "lock-release:";
+
+    private static final String FENCE_KEY_PREFIX = "lock-fence:";
+
+    // lock 을 잡았을 때만 fencing token 을 발급한다. 실패하면 0, lock 은 잡았지만 token 번호가 없으면 -1
+    private static final RedisScript<Long> LOCK_SCRIPT = new DefaultRedisScript<>(
+            "if not redis.call('SET', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then return 0 end " +
+            "if redis.call('EXISTS', KEYS[2]) == 0 then return -1 end " +
+            "return redis.call('INCR', KEYS[2])",
+            Long.class);
+
+    // 아직 자신의 lock 일 때만 token 번호를 max(현재, DB 의 token) 으로 맞춘 뒤 발급한다. lease 를 잃었으면 0
+    private static final RedisScript<Long> SEED_FENCE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) ~= ARGV[1] then return 0 end " +
+            "local current = tonumber(redis.call('GET', KEYS[2]) or '0') " +
+            "if current < tonumber(ARGV[2]) then redis.call('SET', KEYS[2], ARGV[2]) end " +
+            "return redis.call('INCR', KEYS[2])",
+            Long.class);
+
+    // 자신의 lock 일 때만 삭제하고 해제 알림을 보낸다.
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) ~= ARGV[1] then return 0 end " +
+            "redis.call('DEL', KEYS[1]) " +
+            "redis.call('PUBLISH', ARGV[2], KEYS[1]) " +
+            "return 1",
+            Long.class);
+
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) ~= ARGV[1] then return 0 end " +
+            "return redis.call('PEXPIRE', KEYS[1], ARGV[2])",
+            Long.class);
+
     private final RedisTemplate<String, String> redisTemplate;
 
-    public RedisRepository(final RedisTemplate<String, String> redisTemplate) {
+    private final LockReleaseSignals releaseSignals = new LockReleaseSignals();
+
+    private final LockLeaseWatchdog watchdog;
+
+    private final long leaseMillis;
+
+    private final long minBackoffMillis;
+
+    private final long maxBackoffMillis;
+
+    public RedisRepository(final RedisTemplate<String, String> redisTemplate,
+                           final RedisMessageListenerContainer listenerContainer,
+                           @Value("${stock.lettuce.lease-ms:300}") final long leaseMillis,
+                           @Value("${stock.lettuce.backoff.min-ms:5}") final long minBackoffMillis,
+                           @Value("${stock.lettuce.backoff.max-ms:100}") final long maxBackoffMillis) {
         this.redisTemplate = redisTemplate;
+        this.leaseMillis = leaseMillis;
+        this.minBackoffMillis = minBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        // lease 가 끝나기 전에 두 번은 갱신을 시도할 수 있도록 1/3 주기로 연장한다.
+        this.watchdog = new LockLeaseWatchdog(this::renew, Math.max(leaseMillis / 3, 1));
+
+        listenerContainer.addMessageListener(
+                (message, pattern) -> releaseSignals.signal(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new PatternTopic(RELEASE_CHANNEL_PREFIX + "*"));
     }
 
-    public Boolean lock(final Long key) {
-        String generatedKey = generateKey(key);
-        return redisTemplate
-                .opsForValue()
-                .setIfAbsent(generatedKey, "lock", Duration.ofMillis(3_000));
+    /**
+     * lock 을 한 번 시도한다. 잡지 못하면 null 을 반환한다.
+     * 잡은 lease 는 unlock 할 때까지 watchdog 이 연장한다.
+     * Redis 에 fencing token 번호가 없으면 fencing token 이 0 인 lease 를 반환한다. ({@link #issueFencingToken})
+     */
+    public LockLease lock(final Long key) {
+        final String generatedKey = generateKey(key);
+        final String token = UUID.randomUUID().toString();
+
+        final Long fencingToken = redisTemplate.execute(LOCK_SCRIPT,
+                Arrays.asList(generatedKey, FENCE_KEY_PREFIX + generatedKey), token, String.valueOf(leaseMillis));
+        if (fencingToken == null || fencingToken == 0) {
+            return null;
+        }
+
+        final LockLease lease = new LockLease(generatedKey, token, Math.max(fencingToken, 0));
+        watchdog.watch(lease);
+        return lease;
     }
 
-    public Boolean unlock(final Long key) {
-        String generatedKey = generateKey(key);
-        return redisTemplate.delete(generatedKey);
+    /**
+     * fencing token 없이 잡은 lease 에 max(Redis 의 번호, lastFencingToken) + 1 을 발급한다.
+     * 그 사이에 lease 를 잃었으면 null 을 반환한다.
+     */
+    public LockLease issueFencingToken(final LockLease lease, final long lastFencingToken) {
+        final Long fencingToken = redisTemplate.execute(SEED_FENCE_SCRIPT,
+                Arrays.asList(lease.getKey(), FENCE_KEY_PREFIX + lease.getKey()),
+                lease.getToken(), String.valueOf(lastFencingToken));
+        watchdog.unwatch(lease);
+        if (fencingToken == null || fencingToken == 0) {
+            return null;
+        }
+
+        final LockLease fenced = new LockLease(lease.getKey(), lease.getToken(), fencingToken);
+        watchdog.watch(fenced);
+        return fenced;
+    }
+
+    /*
+        lock 을 얻을 때까지 기다린다.
+        spin lock 처럼 고정 주기로 setnx 를 보내지 않고, unlock 쪽이 publish 한 해제 알림을 받으면 바로 다시 시도한다.
+        알림을 놓친 경우(소유자가 죽어서 lease 가 만료된 경우 포함)에 대비해
+        최대 대기 시간은 지수적으로 늘어나는 backoff(+jitter) 로 제한한다.
+     */
+    public LockLease lockAndWait(final Long key) throws InterruptedException {
+        final String generatedKey = generateKey(key);
+        final LockReleaseSignals.Signal signal = releaseSignals.register(generatedKey);
+
+        try {
+            long backoffMillis = minBackoffMillis;
+            while (true) {
+                final long generation = signal.generation();
+                final LockLease lease = lock(key);
+                if (lease != null) {
+                    return lease;
+                }
+
+                if (!signal.await(generation, jitter(backoffMillis))) {
+                    backoffMillis = Math.min(backoffMillis * 2, maxBackoffMillis);
+                }
+            }
+        } finally {
+            releaseSignals.unregister(generatedKey);
+        }
+    }
+
+    /**
+     * 자신이 잡은 lock 만 해제한다. lease 가 이미 만료되어 다른 소유자에게 넘어갔다면 false 를 반환한다.
+     */
+    public boolean unlock(final LockLease lease) {
+        watchdog.unwatch(lease);
+        final Long deleted = redisTemplate.execute(UNLOCK_SCRIPT,
+                Collections.singletonList(lease.getKey()), lease.getToken(), RELEASE_CHANNEL_PREFIX + lease.getKey());
+        return deleted != null && deleted > 0;
+    }
+
+    public boolean renew(final LockLease lease) {
+        final Long renewed = redisTemplate.execute(RENEW_SCRIPT,
+                Collections.singletonList(lease.getKey()), lease.getToken(), String.valueOf(leaseMillis));
+        return renewed != null && renewed > 0;
     }
 
     public String generateKey(final Long key) {
         return key.toString();
     }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdown();
+    }
+
+    private long jitter(final long backoffMillis) {
+        return backoffMillis / 2 + ThreadLocalRandom.current().nextLong(backoffMillis / 2 + 1);
+    }
 }
@@ -0,0 +1,287 @@
+package com.example.stock.repository;
+
+import com.example.stock.ledger.StockBalance;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/*
+    재고 수량 자체를 Redis 에 두고, 확인과 감소를 Lua 스크립트 한 번으로 원자적으로 처리한다.
+    감소와 입고는 상품별 version 을 함께 올려서, 변경 알림이 늦게 도착해도 순서를 알 수 있게 한다.
+    감소된 수량은 pending hash 에 함께 누적해 두었다가 동기화 작업이 꺼내서 Stock 테이블에 반영한다.
+    꺼낸 감소분은 DB 커밋이 끝날 때까지 inflight hash 에 남겨 두어서, 다른 서버의 evict 가 반영 중인 상품을 지우지 못하게 한다.
+    꺼낸 묶음은 꺼낸 서버와 시각을 함께 기록하고, 반영을 끝내지 못한 채 timeout 이 지난 묶음은 pending 으로 되돌린다.
+    DB 에 반영할 수 없는 감소분은 quarantined hash 로 옮겨 두고 다시 시도하지 않는다.
+ */
+@Component
+public class RedisStockRepository {
+
+    public static final long NOT_ENOUGH_STOCK = -1L;
+
+    public static final long NOT_LOADED = -2L;
+
+    private static final String PENDING_KEY = "stock:pending";
+
+    private static final String INFLIGHT_KEY = "stock:inflight";
+
+    private static final String QUARANTINED_KEY = "stock:quarantined";
+
+    // 꺼낸 묶음 id -> 꺼낸 시각(ms) 인 sorted set, 묶음마다 productId -> 감소량 hash
+    private static final String INFLIGHT_BATCHES_KEY = "stock:inflight-batches";
+
+    private static final String INFLIGHT_BATCH_KEY_PREFIX = "stock:inflight-batch:";
+
+    // 남은 수량과 version 을 함께 반환한다. version 은 처음 바뀔 때 ARGV[3] (현재 시각) 에서 시작해서 변경마다 1 씩 커진다.
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> DECREASE_SCRIPT = new DefaultRedisScript<>(
+            "local stock = redis.call('GET', KEYS[1]) " +
+            "if not stock then return {-2, 0} end " +
+            "local quantity = tonumber(ARGV[1]) " +
+            "if tonumber(stock) < quantity then return {-1, 0} end " +
+            "redis.call('HINCRBY', KEYS[2], ARGV[2], quantity) " +
+            "redis.call('SET', KEYS[3], ARGV[3], 'NX') " +
+            "return {redis.call('DECRBY', KEYS[1], quantity), redis.call('INCR', KEYS[3])}",
+            List.class);
+
+    // 입고는 pending 에 음수 감소분으로 쌓아서 감소분과 함께 DB 에 반영한다.
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> RESTOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return {-2, 0} end " +
+            "redis.call('HINCRBY', KEYS[2], ARGV[2], -tonumber(ARGV[1])) " +
+            "redis.call('SET', KEYS[3], ARGV[3], 'NX') " +
+            "return {redis.call('INCRBY', KEYS[1], ARGV[1]), redis.call('INCR', KEYS[3])}",
+            List.class);
+
+    // pending 을 inflight 로 옮기면서 같은 내용을 묶음(KEYS[3]) 에 남기고, 묶음 id 를 꺼낸 시각과 함께 KEYS[4] 에 기록한다.
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> DRAIN_PENDING_SCRIPT = new DefaultRedisScript<>(
+            "local pending = redis.call('HGETALL', KEYS[1]) " +
+            "if #pending == 0 then return pending end " +
+            "for i = 1, #pending, 2 do " +
+            "  redis.call('HINCRBY', KEYS[2], pending[i], pending[i + 1]) " +
+            "  redis.call('HSET', KEYS[3], pending[i], pending[i + 1]) " +
+            "end " +
+            "redis.call('ZADD', KEYS[4], ARGV[2], ARGV[1]) " +
+            "redis.call('DEL', KEYS[1]) " +
+            "return pending",
+            List.class);
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> DRAIN_SCRIPT = new DefaultRedisScript<>(
+            "local entries = redis.call('HGETALL', KEYS[1]) " +
+            "redis.call('DEL', KEYS[1]) " +
+            "return entries",
+            List.class);
+
+    // 묶음(KEYS[2]) 의 한 상품을 inflight 에서 빼서 KEYS[4] (있으면) 로 옮긴다. 0 이 된 항목은 지운다. (입고가 섞이면 음수일 수 있다)
+    // 이미 timeout 으로 회수된 묶음이면 아무것도 하지 않고 0 을 반환한다.
+    private static final RedisScript<Long> SETTLE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('HEXISTS', KEYS[2], ARGV[1]) == 0 then return 0 end " +
+            "local left = redis.call('HINCRBY', KEYS[1], ARGV[1], -tonumber(ARGV[2])) " +
+            "if left == 0 then redis.call('HDEL', KEYS[1], ARGV[1]) end " +
+            "redis.call('HDEL', KEYS[2], ARGV[1]) " +
+            "if redis.call('EXISTS', KEYS[2]) == 0 then redis.call('ZREM', KEYS[3], ARGV[3]) end " +
+            "if #KEYS > 3 then redis.call('HINCRBY', KEYS[4], ARGV[1], ARGV[2]) end " +
+            "return 1",
+            Long.class);
+
+    // ARGV[1] 시각 이전에 꺼낸 묶음을 inflight 에서 빼서 pending 으로 되돌린다. 묶음 key 는 ARGV[2] + 묶음 id 이다.
+    private static final RedisScript<Long> RECLAIM_SCRIPT = new DefaultRedisScript<>(
+            "local stale = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1]) " +
+            "for _, batchId in ipairs(stale) do " +
+            "  local batchKey = ARGV[2] .. batchId " +
+            "  local entries = redis.call('HGETALL', batchKey) " +
+            "  for i = 1, #entries, 2 do " +
+            "    local left = redis.call('HINCRBY', KEYS[2], entries[i], -tonumber(entries[i + 1])) " +
+            "    if left == 0 then redis.call('HDEL', KEYS[2], entries[i]) end " +
+            "    redis.call('HINCRBY', KEYS[3], entries[i], entries[i + 1]) " +
+            "  end " +
+            "  redis.call('DEL', batchKey) " +
+            "  redis.call('ZREM', KEYS[1], batchId) " +
+            "end " +
+            "return #stale",
+            Long.class);
+
+    // 반영되지 않은 감소분이 남아 있으면 지우지 않는다. 감소 스크립트와 같은 Redis 에서 원자적으로 확인하고 지운다.
+    private static final RedisScript<Long> DELETE_IF_SYNCED_SCRIPT = new DefaultRedisScript<>(
+            "local pending = tonumber(redis.call('HGET', KEYS[2], ARGV[1]) or '0') " +
+            "local inflight = tonumber(redis.call('HGET', KEYS[3], ARGV[1]) or '0') " +
+            "if pending ~= 0 or inflight ~= 0 then return 0 end " +
+            "redis.call('DEL', KEYS[1]) " +
+            "return 1",
+            Long.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+
+    // 이 서버가 꺼낸 묶음을 구분하는 값
+    private final String owner = UUID.randomUUID().toString();
+
+    private final AtomicLong batchSequence = new AtomicLong();
+
+    public RedisStockRepository(final RedisTemplate<String, String> redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * 남은 수량을 반환한다. 재고가 부족하면 수량이 {@link #NOT_ENOUGH_STOCK}, 아직 적재되지 않았다면 {@link #NOT_LOADED}.
+     */
+    public StockBalance decrease(final Long productId, final Long quantity) {
+        return toBalance(redisTemplate.execute(DECREASE_SCRIPT,
+                Arrays.asList(generateKey(productId), PENDING_KEY, generateVersionKey(productId)),
+                quantity.toString(), productId.toString(), String.valueOf(StockBalance.initialVersion())));
+    }
+
+    /**
+     * 적재된 상품이면 입고분을 더하고 더한 뒤의 수량을 반환한다. 적재되지 않았으면 수량이 NOT_LOADED.
+     */
+    public StockBalance restock(final Long productId, final Long quantity) {
+        return toBalance(redisTemplate.execute(RESTOCK_SCRIPT,
+                Arrays.asList(generateKey(productId), PENDING_KEY, generateVersionKey(productId)),
+                quantity.toString(), productId.toString(), String.valueOf(StockBalance.initialVersion())));
+    }
+
+    public Boolean initialize(final Long productId, final Long quantity) {
+        return redisTemplate.opsForValue().setIfAbsent(generateKey(productId), quantity.toString());
+    }
+
+    public Long getQuantity(final Long productId) {
+        final String quantity = redisTemplate.opsForValue().get(generateKey(productId));
+        return quantity == null ? null : Long.valueOf(quantity);
+    }
+
+    public Set<Long> findLoaded(final Collection<Long> productIds) {
+        final List<Long> ids = new ArrayList<>(new LinkedHashSet<>(productIds));
+        if (ids.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        final List<String> quantities = redisTemplate.opsForValue()
+                .multiGet(ids.stream().map(this::generateKey).collect(Collectors.toList()));
+        final Set<Long> loaded = new HashSet<>();
+        for (int i = 0; i < ids.size(); i++) {
+            if (quantities != null && quantities.get(i) != null) {
+                loaded.add(ids.get(i));
+            }
+        }
+        return loaded;
+    }
+
+    public Boolean delete(final Long productId) {
+        return redisTemplate.delete(generateKey(productId));
+    }
+
+    /**
+     * 아직 DB 에 반영되지 않은 감소분이 없을 때만 재고를 지운다. 지웠으면 true.
+     */
+    public boolean deleteIfSynced(final Long productId) {
+        final Long deleted = redisTemplate.execute(DELETE_IF_SYNCED_SCRIPT,
+                Arrays.asList(generateKey(productId), PENDING_KEY, INFLIGHT_KEY), productId.toString());
+        return deleted != null && deleted == 1L;
+    }
+
+    /**
+     * 아직 DB 에 반영되지 않은 productId 별 감소량을 꺼내서 inflight 로 옮긴다.
+     * 반영한 뒤에는 상품마다 {@link #completePendingDecrease}, 실패하면 {@link #restorePendingDecrease} 나 {@link #quarantine} 을 호출해야 한다.
+     * 셋 다 호출되지 않은 채로 timeout 이 지나면 {@link #reclaimStaleDecreases} 가 pending 으로 되돌린다.
+     */
+    public InflightDecreases drainPendingDecreases() {
+        final String batchId = owner + ":" + batchSequence.incrementAndGet();
+        final List<?> entries = redisTemplate.execute(DRAIN_PENDING_SCRIPT,
+                Arrays.asList(PENDING_KEY, INFLIGHT_KEY, INFLIGHT_BATCH_KEY_PREFIX + batchId, INFLIGHT_BATCHES_KEY),
+                batchId, String.valueOf(System.currentTimeMillis()));
+        return new InflightDecreases(batchId, toDecreases(entries));
+    }
+
+    public void completePendingDecreases(final InflightDecreases inflight) {
+        inflight.getDecreases().keySet().forEach(productId -> completePendingDecrease(inflight, productId));
+    }
+
+    /**
+     * 이미 timeout 으로 회수되어 pending 에 되돌아간 감소분이면 false.
+     */
+    public boolean completePendingDecrease(final InflightDecreases inflight, final Long productId) {
+        return settle(inflight, productId, null);
+    }
+
+    public boolean restorePendingDecrease(final InflightDecreases inflight, final Long productId) {
+        return settle(inflight, productId, PENDING_KEY);
+    }
+
+    public boolean quarantine(final InflightDecreases inflight, final Long productId) {
+        return settle(inflight, productId, QUARANTINED_KEY);
+    }
+
+    /**
+     * timeoutMillis 보다 오래 inflight 에 남아 있는 묶음을 pending 으로 되돌리고, 되돌린 묶음 수를 반환한다.
+     * 꺼낸 서버가 반영을 끝내지 못하고 죽은 경우를 위한 것이므로, timeout 은 한 번의 sync 가 걸리는 시간보다 충분히 길어야 한다.
+     */
+    public long reclaimStaleDecreases(final long timeoutMillis) {
+        final Long reclaimed = redisTemplate.execute(RECLAIM_SCRIPT,
+                Arrays.asList(INFLIGHT_BATCHES_KEY, INFLIGHT_KEY, PENDING_KEY),
+                String.valueOf(System.currentTimeMillis() - timeoutMillis), INFLIGHT_BATCH_KEY_PREFIX);
+        return reclaimed == null ? 0 : reclaimed;
+    }
+
+    /**
+     * 격리된 감소분을 꺼내고 비운다. 운영자가 확인한 뒤 정리할 때 사용한다.
+     */
+    public Map<Long, Long> drainQuarantinedDecreases() {
+        return drain(Collections.singletonList(QUARANTINED_KEY));
+    }
+
+    private Map<Long, Long> drain(final List<String> keys) {
+        return toDecreases(redisTemplate.execute(DRAIN_SCRIPT, keys));
+    }
+
+    private boolean settle(final InflightDecreases inflight, final Long productId, final String destination) {
+        final List<String> keys = new ArrayList<>(Arrays.asList(
+                INFLIGHT_KEY, INFLIGHT_BATCH_KEY_PREFIX + inflight.getBatchId(), INFLIGHT_BATCHES_KEY));
+        if (destination != null) {
+            keys.add(destination);
+        }
+        final Long settled = redisTemplate.execute(SETTLE_SCRIPT, keys,
+                productId.toString(), inflight.getDecreases().get(productId).toString(), inflight.getBatchId());
+        return settled != null && settled == 1L;
+    }
+
+    private static Map<Long, Long> toDecreases(final List<?> entries) {
+        final Map<Long, Long> decreases = new LinkedHashMap<>();
+        if (entries == null) {
+            return decreases;
+        }
+
+        for (int i = 0; i + 1 < entries.size(); i += 2) {
+            decreases.put(Long.valueOf(entries.get(i).toString()), Long.valueOf(entries.get(i + 1).toString()));
+        }
+        return decreases;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static StockBalance toBalance(final List result) {
+        return new StockBalance((Long) result.get(0), (Long) result.get(1));
+    }
+
+    public String generateKey(final Long productId) {
+        return "stock:" + productId;
+    }
+
+    // 재고를 지우고 다시 적재해도 version 이 이어지도록 재고 key 와 따로 두고 지우지 않는다.
+    private String generateVersionKey(final Long productId) {
+        return "stock-version:" + productId;
+    }
+}
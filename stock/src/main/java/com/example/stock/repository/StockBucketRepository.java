@@ -0,0 +1,30 @@
+package com.example.stock.repository;
+
+import com.example.stock.domain.StockBucket;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.LockModeType;
+import java.util.List;
+
+public interface StockBucketRepository extends JpaRepository<StockBucket, Long> {
+
+    List<StockBucket> findAllByProductIdOrderByBucketNo(Long productId);
+
+    // 항상 bucketNo 순서로 lock 을 잡으므로 여러 bucket 을 함께 잠그는 트랜잭션끼리 deadlock 이 나지 않는다.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<StockBucket> findAllWithLockByProductIdOrderByBucketNo(Long productId);
+
+    long countByProductId(Long productId);
+
+    // 해당 bucket row 하나만 잠그는 조건부 UPDATE
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update StockBucket b set b.quantity = b.quantity - :quantity " +
+            "where b.productId = :productId and b.bucketNo = :bucketNo and b.quantity >= :quantity")
+    int decrease(@Param("productId") Long productId,
+                 @Param("bucketNo") Integer bucketNo,
+                 @Param("quantity") Long quantity);
+}
@@ -0,0 +1,50 @@
+package com.example.stock.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/*
+    productId -> Stock.id 를 기억해 두어서 lock 을 잡는 조회가 secondary index 대신 primary key 로 가도록 한다.
+    id 는 Stock 행이 다시 만들어지지 않는 한 바뀌지 않으므로 만료 시간 없이 크기만 제한한다.
+    삭제 후 다시 만들어져 id 가 바뀐 경우는 조회한 행의 productId 가 다르거나 행이 없는 것으로 알 수 있으므로,
+    그때 evict 하고 다시 찾는다. (PessimisticStockRepositoryImpl 참고)
+ */
+@Component
+public class StockIdResolver {
+
+    private final StockRepository stockRepository;
+
+    private final Cache<Long, Long> ids;
+
+    public StockIdResolver(final StockRepository stockRepository,
+                           @Value("${stock.id-cache.maximum-size:200000}") final long maximumSize) {
+        this.stockRepository = stockRepository;
+        this.ids = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .build();
+    }
+
+    // 없는 상품이면 null
+    public Long resolve(final Long productId) {
+        final Long cached = ids.getIfPresent(productId);
+        if (cached != null) {
+            return cached;
+        }
+
+        final Long id = stockRepository.findIdByProductId(productId);
+        if (id != null) {
+            ids.put(productId, id);
+        }
+        return id;
+    }
+
+    public void evict(final Long productId) {
+        ids.invalidate(productId);
+    }
+
+    public void evictAll() {
+        ids.invalidateAll();
+    }
+}
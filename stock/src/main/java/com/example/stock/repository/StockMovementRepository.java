@@ -0,0 +1,14 @@
+package com.example.stock.repository;
+
+import com.example.stock.domain.StockMovement;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+// 이력 조회용. 쓰기는 StockMovementWriter 가 JDBC batch 로 한다.
+public interface StockMovementRepository extends JpaRepository<StockMovement, Long> {
+
+    List<StockMovement> findAllByProductIdOrderById(Long productId);
+
+    long countByProductIdAndCompactedFalse(Long productId);
+}
@@ -4,6 +4,7 @@ import com.example.stock.domain.Stock;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import javax.persistence.LockModeType;
 
@@ -14,4 +15,14 @@ public interface StockRepository extends JpaRepository<Stock, Long> {
         단점: 별도의 Lock을 잡기 때문에 성능이 감소한다.
      */
     Stock getByProductId(Long productId);
+
+    @Query("select s.id from Stock s where s.productId = :productId")
+    Long findIdByProductId(@Param("productId") Long productId);
+
+    // 판매 가능한 전체 수량: Stock + bucket 으로 나눈 수량 + 아직 compaction 되지 않은 movement
+    @Query("select s.quantity" +
+            " + coalesce((select sum(b.quantity) from StockBucket b where b.productId = s.productId), 0)" +
+            " + coalesce((select sum(m.quantity) from StockMovement m where m.productId = s.productId and m.compacted = false), 0)" +
+            " from Stock s where s.productId = :productId")
+    Long findAvailableQuantity(@Param("productId") Long productId);
 }
@@ -0,0 +1,30 @@
+package com.example.stock.repository;
+
+import com.example.stock.domain.StockReservation;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.LockModeType;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<StockReservation> findWithLockById(Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<StockReservation> findAllWithLockByIdInAndStatusOrderById(Collection<Long> ids, StockReservation.Status status);
+
+    List<StockReservation> findAllByStatus(StockReservation.Status status);
+
+    @Query("select r.id from StockReservation r where r.status = :status and r.expiresAt < :expiredBefore order by r.id")
+    List<Long> findIdsByStatusAndExpiresAtBefore(@Param("status") StockReservation.Status status,
+                                                 @Param("expiredBefore") Instant expiredBefore,
+                                                 Pageable pageable);
+}
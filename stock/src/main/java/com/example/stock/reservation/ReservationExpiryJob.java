@@ -0,0 +1,95 @@
+package com.example.stock.reservation;
+
+import com.example.stock.domain.StockReservation;
+import com.example.stock.service.StockReservationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+
+/*
+    tick 마다 timing wheel 에서 만료된 예약을 꺼내 배치로 되돌린다.
+    만료 대상이 없으면 DB 에 접근하지 않는다.
+    wheel 은 예약을 받은 서버의 메모리에만 있으므로, 그 서버가 죽으면 재기동 전까지 아무도 만료시키지 않는다.
+    그래서 sweep 주기마다 만료 시각이 sweepGraceMillis 넘게 지난 HELD 예약을 DB 에서 찾아 되돌린다.
+ */
+@Component
+public class ReservationExpiryJob {
+
+    private static final Logger log = LoggerFactory.getLogger(ReservationExpiryJob.class);
+
+    private final ReservationExpiryWheel expiryWheel;
+
+    private final StockReservationService reservationService;
+
+    private final int batchSize;
+
+    // 살아 있는 서버의 wheel 이 처리할 예약까지 sweep 이 가져가지 않도록 이만큼 더 지난 예약만 찾는다.
+    private final long sweepGraceMillis;
+
+    public ReservationExpiryJob(final ReservationExpiryWheel expiryWheel,
+                                final StockReservationService reservationService,
+                                @Value("${stock.reservation.expire-batch-size:500}") final int batchSize,
+                                @Value("${stock.reservation.sweep-grace-ms:10000}") final long sweepGraceMillis) {
+        this.expiryWheel = expiryWheel;
+        this.reservationService = reservationService;
+        this.batchSize = batchSize;
+        this.sweepGraceMillis = sweepGraceMillis;
+    }
+
+    @Scheduled(fixedRateString = "${stock.reservation.tick-ms:100}")
+    public void expire() {
+        final List<Long> expired = expiryWheel.advance(Instant.now());
+
+        for (int from = 0; from < expired.size(); from += batchSize) {
+            final List<Long> batch = expired.subList(from, Math.min(from + batchSize, expired.size()));
+            try {
+                reservationService.expire(batch);
+            } catch (RuntimeException e) {
+                // 다음 tick 에 다시 시도한다.
+                log.warn("failed to expire reservations. count={}", batch.size(), e);
+                final Instant retryAt = Instant.now();
+                batch.forEach(reservationId -> expiryWheel.schedule(reservationId, retryAt));
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${stock.reservation.sweep-interval-ms:30000}")
+    public void sweep() {
+        final Instant expiredBefore = Instant.now().minusMillis(sweepGraceMillis);
+        int swept = 0;
+        try {
+            while (true) {
+                final List<Long> expired = reservationService.findExpiredHeldIds(expiredBefore, batchSize);
+                if (expired.isEmpty()) {
+                    break;
+                }
+                swept += reservationService.expire(expired);
+                if (expired.size() < batchSize) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            // 다음 sweep 에 다시 시도한다.
+            log.warn("failed to sweep expired reservations. swept={}", swept, e);
+            return;
+        }
+        if (swept > 0) {
+            log.info("expired reservations left by other servers swept. count={}", swept);
+        }
+    }
+
+    // 재기동 시 아직 HELD 상태인 예약을 한 번만 읽어서 wheel 에 다시 등록한다.
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        final List<StockReservation> held = reservationService.findHeld();
+        held.forEach(reservation -> expiryWheel.schedule(reservation.getId(), reservation.getExpiresAt()));
+        log.info("reservation expiry wheel recovered. held={}", held.size());
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.stock.reservation;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+
+// 예약 만료 시각을 관리하는 timing wheel. DB 를 주기적으로 조회하지 않고 메모리에서 만료 대상을 찾는다.
+@Component
+public class ReservationExpiryWheel {
+
+    private final TimingWheel<Long> wheel;
+
+    public ReservationExpiryWheel(@Value("${stock.reservation.tick-ms:100}") final long tickMillis,
+                                  @Value("${stock.reservation.wheel-size:512}") final int wheelSize) {
+        this.wheel = new TimingWheel<>(tickMillis, wheelSize, System.currentTimeMillis());
+    }
+
+    public void schedule(final Long reservationId, final Instant expiresAt) {
+        wheel.add(reservationId, expiresAt.toEpochMilli());
+    }
+
+    public synchronized List<Long> advance(final Instant now) {
+        return wheel.advance(now.toEpochMilli());
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.stock.reservation;
+
+import com.example.stock.domain.StockReservation;
+
+// 이미 confirm / release / 만료된 예약을 다시 처리하려고 했다. 다시 시도해도 결과가 바뀌지 않는다.
+public class ReservationStateException extends IllegalStateException {
+
+    public ReservationStateException(final StockReservation.Status status) {
+        super("Reservation is already " + status);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.stock.reservation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/*
+    hashed timing wheel.
+    만료 시각을 tick 단위로 잘라 원형 배열의 slot 에 넣어 두고, advance 는 지나간 slot 만 확인한다.
+    추가는 O(1) 이고, 만료 확인 비용은 등록된 전체 항목 수가 아니라 지나간 slot 의 항목 수에 비례한다.
+
+    add 는 여러 스레드에서 호출할 수 있다. 추가된 항목은 먼저 pending 큐에 쌓이고,
+    advance 를 호출하는 스레드(하나여야 한다)가 slot 으로 옮기므로 slot 자체는 동기화가 필요 없다.
+ */
+public class TimingWheel<T> {
+
+    private final long tickMillis;
+
+    private final Queue<Entry<T>>[] slots;
+
+    private final long startMillis;
+
+    private final Queue<Entry<T>> pending = new ConcurrentLinkedQueue<>();
+
+    // 마지막으로 처리한 tick
+    private long currentTick = -1;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(final long tickMillis, final int wheelSize, final long startMillis) {
+        this.tickMillis = tickMillis;
+        this.slots = new Queue[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            slots[i] = new ArrayDeque<>();
+        }
+        this.startMillis = startMillis;
+    }
+
+    public void add(final T item, final long deadlineMillis) {
+        pending.add(new Entry<>(item, deadlineMillis));
+    }
+
+    /**
+     * nowMillis 까지 지나간 slot 을 확인하고 만료된 항목을 반환한다.
+     */
+    public List<T> advance(final long nowMillis) {
+        transferPending();
+
+        final List<T> expired = new ArrayList<>();
+        final long targetTick = tickOf(nowMillis);
+
+        // 한 바퀴 이상 밀렸다면 모든 slot 을 한 번씩만 보면 된다.
+        for (long tick = Math.max(currentTick + 1, targetTick - slots.length + 1); tick <= targetTick; tick++) {
+            final Iterator<Entry<T>> iterator = slots[slotOf(tick)].iterator();
+            while (iterator.hasNext()) {
+                final Entry<T> entry = iterator.next();
+                // 한 바퀴 뒤에 만료될 항목은 그대로 둔다.
+                if (entry.deadlineMillis <= nowMillis) {
+                    expired.add(entry.item);
+                    iterator.remove();
+                }
+            }
+        }
+
+        currentTick = Math.max(currentTick, targetTick);
+        return expired;
+    }
+
+    private void transferPending() {
+        Entry<T> entry;
+        while ((entry = pending.poll()) != null) {
+            // deadline 이 속한 tick 이 끝난 뒤(다음 tick)에 확인해야 만료가 보장된다.
+            // 이미 지나간 tick 이라면 바로 다음 advance 에서 만료되도록 한다.
+            final long tick = Math.max(tickOf(entry.deadlineMillis) + 1, currentTick + 1);
+            slots[slotOf(tick)].add(entry);
+        }
+    }
+
+    private long tickOf(final long millis) {
+        return Math.max(0, (millis - startMillis) / tickMillis);
+    }
+
+    private int slotOf(final long tick) {
+        return (int) (tick % slots.length);
+    }
+
+    private static final class Entry<T> {
+        private final T item;
+        private final long deadlineMillis;
+
+        private Entry(final T item, final long deadlineMillis) {
+            this.item = item;
+            this.deadlineMillis = deadlineMillis;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.stock.retry;
+
+import com.example.stock.metrics.StrategyMetrics;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.OptimisticLockException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Optimistic Lock 의 version 충돌만 재시도한다. ("Not enough stock" 같은 비즈니스 예외는 바로 던진다.)
+    재시도 간격은 decorrelated jitter 를 적용한 지수 backoff 이고, 최대 시도 횟수와 deadline 을 넘으면 마지막 충돌 예외를 던진다.
+ */
+@Component
+public class OptimisticLockRetryExecutor {
+
+    private final RetryProperties properties;
+
+    public OptimisticLockRetryExecutor(final RetryProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * 성공할 때까지 action 을 실행하고, 실제로 실행한 횟수를 반환한다.
+     * 충돌은 metrics 의 retry 로, 재시도 포기는 timeout 으로 기록한다.
+     */
+    public int execute(final Long productId, final Runnable action, final StrategyMetrics metrics) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getDeadlineMillis());
+        long delayMillis = properties.getBaseDelayMillis();
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                action.run();
+                return attempt;
+            } catch (RuntimeException e) {
+                if (!isConflict(e)) {
+                    throw e;
+                }
+                metrics.retried(productId);
+
+                delayMillis = nextDelay(delayMillis);
+                final boolean deadlinePassed = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis) > deadline;
+                if (attempt >= properties.getMaxAttempts() || deadlinePassed) {
+                    metrics.timedOut();
+                    throw e;
+                }
+            }
+
+            Thread.sleep(delayMillis);
+        }
+    }
+
+    // decorrelated jitter: min(cap, random(base, previous * 3))
+    private long nextDelay(final long previousDelayMillis) {
+        final long base = properties.getBaseDelayMillis();
+        final long upper = Math.max(base, previousDelayMillis * 3);
+        return Math.min(properties.getMaxDelayMillis(), ThreadLocalRandom.current().nextLong(base, upper + 1));
+    }
+
+    public static boolean isConflict(final Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ObjectOptimisticLockingFailureException || cause instanceof OptimisticLockException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.stock.retry;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "stock.optimistic.retry")
+public class RetryProperties {
+
+    // 최초 시도를 포함한 최대 시도 횟수
+    private int maxAttempts = 1_000;
+
+    private long baseDelayMillis = 1;
+
+    private long maxDelayMillis = 50;
+
+    // 최초 시도부터 이 시간이 지나면 더 이상 재시도하지 않는다.
+    private long deadlineMillis = 60_000;
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(final int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public long getBaseDelayMillis() {
+        return baseDelayMillis;
+    }
+
+    public void setBaseDelayMillis(final long baseDelayMillis) {
+        this.baseDelayMillis = baseDelayMillis;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    public void setMaxDelayMillis(final long maxDelayMillis) {
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public long getDeadlineMillis() {
+        return deadlineMillis;
+    }
+
+    public void setDeadlineMillis(final long deadlineMillis) {
+        this.deadlineMillis = deadlineMillis;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.stock.service;
+
+import com.example.stock.cache.StockChangePublisher;
+import com.example.stock.domain.Stock;
+import com.example.stock.lock.StaleLockException;
+import com.example.stock.repository.AtomicUpdateStockRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/*
+    read-modify-write 없이 DB 의 조건부 UPDATE 한 문장으로 재고를 감소시킨다.
+    UPDATE 가 잡는 row lock 은 문장이 끝나고 커밋될 때까지만 유지되므로 별도의 Lock, Version 재시도가 필요 없다.
+ */
+@Service
+public class AtomicUpdateStockService implements StockBusinessInterface {
+
+    private final AtomicUpdateStockRepository stockRepository;
+
+    private final StockChangePublisher stockChangePublisher;
+
+    public AtomicUpdateStockService(final AtomicUpdateStockRepository stockRepository,
+                                    final StockChangePublisher stockChangePublisher) {
+        this.stockRepository = stockRepository;
+        this.stockChangePublisher = stockChangePublisher;
+    }
+
+    @Transactional
+    public void decrease(final Long id, final Long quantity) {
+        if (stockRepository.decrease(id, quantity) == 0) {
+            throw new IllegalArgumentException("Not enough stock");
+        }
+        // bulk UPDATE 는 entity listener 를 거치지 않는다.
+        stockChangePublisher.invalidate(id);
+    }
+
+    /**
+     * Redis lock 의 fencing token 을 함께 넘겨서 감소시킨다.
+     * 더 큰 token 으로 이미 쓰기가 반영되었다면 StaleLockException 을 던진다.
+     */
+    @Transactional
+    public void decreaseFenced(final Long id, final Long quantity, final long fencingToken) {
+        if (stockRepository.decreaseFenced(id, quantity, fencingToken) == 0) {
+            final Stock stock = stockRepository.getByProductId(id);
+            if (stock != null && stock.getFencingToken() > fencingToken) {
+                throw new StaleLockException(id, fencingToken, stock.getFencingToken());
+            }
+            throw new IllegalArgumentException("Not enough stock");
+        }
+        stockChangePublisher.invalidate(id);
+    }
+
+    /**
+     * 마지막으로 반영된 fencing token. Redis 의 token 번호를 잃었을 때 이 값부터 다시 센다.
+     */
+    @Transactional(readOnly = true)
+    public long findFencingToken(final Long id) {
+        final Long fencingToken = stockRepository.findFencingToken(id);
+        return fencingToken == null ? 0 : fencingToken;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.stock.service;
+
+import java.util.Collection;
+import java.util.Set;
+
+/*
+    잔량을 DB 밖(JVM 카운터, Redis)에 적재해 두고 감소시키는 방식. (in-memory, redis-script, ledger)
+    적재된 상품의 Stock row 를 직접 바꾸면 적재된 잔량과 어긋나므로, 입고는 이 interface 를 거쳐 반영한다.
+ */
+public interface CounterStockService {
+
+    /**
+     * ids 중 잔량이 적재된 상품을 반환한다. 피드의 batch 하나를 한 번에 확인한다.
+     */
+    Set<Long> findLoaded(Collection<Long> ids);
+
+    /**
+     * 잔량이 적재된 상품이면 입고를 반영하고 true 를 반환한다.
+     * 적재되지 않은 상품이면 아무것도 하지 않고 false 를 반환하므로, 호출한 쪽이 Stock row 에 직접 반영한다.
+     */
+    boolean restockIfLoaded(Long id, Long quantity);
+}
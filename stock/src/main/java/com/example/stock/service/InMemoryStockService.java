@@ -0,0 +1,224 @@
+package com.example.stock.service;
+
+import com.example.stock.cache.StockChangePublisher;
+import com.example.stock.domain.Stock;
+import com.example.stock.ledger.StockBalance;
+import com.example.stock.ledger.StockCounters;
+import com.example.stock.repository.StockRepository;
+import com.example.stock.retry.TransientFailures;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/*
+    DB round trip 없이 JVM 메모리의 CAS 카운터로 재고를 감소시키는 방식.
+    감소된 수량은 productId 별로 모아 두었다가 flush 주기마다 StockRepository 를 통해 배치로 반영한다.
+    단, 카운터가 JVM 안에만 있으므로 서버가 여러 대라면 사용할 수 없고, flush 전에 프로세스가 죽으면
+    그 사이의 감소분은 유실된다. (재기동 시 recover 에서 Stock 테이블 기준으로 다시 적재한다.)
+    배치 반영이 실패하면 상품마다 따로 다시 반영해서, 반영할 수 없는 상품 하나가 나머지를 막지 않게 한다.
+    일시적인 실패(lock / 연결)만 다음 flush 에서 재시도하고, 그 외(다른 경로가 이미 재고를 줄여서 부족한 경우 등)는
+    격리(quarantined) 해서 로그를 남기고 카운터를 DB 기준으로 다시 적재한다.
+    카운터가 적재된 상품의 입고는 음수 감소분으로 함께 모아 두었다가 flush 한다.
+ */
+@Service
+public class InMemoryStockService implements StockBusinessInterface, CounterStockService {
+
+    private static final Logger log = LoggerFactory.getLogger(InMemoryStockService.class);
+
+    private final StockRepository stockRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final StockChangePublisher stockChangePublisher;
+
+    private final int flushBatchSize;
+
+    private final StockCounters counters = new StockCounters();
+
+    // 아직 DB 에 반영되지 않은 productId 별 누적 감소량
+    private final ConcurrentMap<Long, AtomicLong> pendingDecreases = new ConcurrentHashMap<>();
+
+    // DB 에 반영할 수 없어서 재시도하지 않는 감소분. 운영자가 확인 후 정리한다.
+    private final ConcurrentMap<Long, AtomicLong> quarantinedDecreases = new ConcurrentHashMap<>();
+
+    public InMemoryStockService(final StockRepository stockRepository,
+                                final TransactionTemplate transactionTemplate,
+                                final StockChangePublisher stockChangePublisher,
+                                @Value("${stock.in-memory.flush-batch-size:500}") final int flushBatchSize) {
+        this.stockRepository = stockRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.stockChangePublisher = stockChangePublisher;
+        this.flushBatchSize = flushBatchSize;
+    }
+
+    public void decrease(final Long id, final Long quantity) {
+        final StockBalance remaining = counters.decrease(id, quantity, this::loadQuantity);
+        pendingDecreases.computeIfAbsent(id, key -> new AtomicLong()).addAndGet(quantity);
+        // DB 보다 카운터가 앞서 있으므로 남은 수량을 바로 알린다.
+        stockChangePublisher.changed(id, remaining);
+    }
+
+    @Override
+    public Set<Long> findLoaded(final Collection<Long> ids) {
+        return ids.stream().filter(id -> counters.get(id) != null).collect(Collectors.toSet());
+    }
+
+    /**
+     * 입고는 음수 감소분으로 쌓아 두었다가 감소분과 함께 flush 한다.
+     * 카운터보다 먼저 쌓아야 입고분을 판 감소가 입고보다 먼저 flush 되어 DB 에서 재고 부족으로 실패하지 않는다.
+     */
+    @Override
+    public boolean restockIfLoaded(final Long id, final Long quantity) {
+        final StockBalance remaining = counters.increaseIfPresent(id, quantity,
+                () -> pendingDecreases.computeIfAbsent(id, key -> new AtomicLong()).addAndGet(-quantity));
+        if (remaining == null) {
+            return false;
+        }
+        stockChangePublisher.changed(id, remaining);
+        return true;
+    }
+
+    public Long getQuantity(final Long id) {
+        final Long quantity = counters.get(id);
+        return quantity != null ? quantity : loadQuantity(id);
+    }
+
+    @Scheduled(fixedDelayString = "${stock.in-memory.flush-interval-ms:200}")
+    public synchronized void flush() {
+        final Map<Long, Long> batch = new LinkedHashMap<>();
+
+        for (final Map.Entry<Long, AtomicLong> entry : pendingDecreases.entrySet()) {
+            final long delta = entry.getValue().getAndSet(0);
+            if (delta == 0) {
+                continue;
+            }
+
+            batch.put(entry.getKey(), delta);
+            if (batch.size() >= flushBatchSize) {
+                write(batch);
+                batch.clear();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    /**
+     * 카운터를 Stock 테이블 기준으로 다시 적재한다.
+     * 남아 있는 감소분을 먼저 flush 하므로 감소 요청이 들어오지 않는 기동 시점에 호출해야 한다.
+     * flush 하지 못한 감소분은 버리지 않고 남겨 두고, 카운터도 그만큼 뺀 값으로 적재한다.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void recover() {
+        flush();
+        counters.clear();
+
+        final List<Stock> stocks = stockRepository.findAll();
+        stocks.forEach(stock -> counters.put(stock.getProductId(), stock.getQuantity() - pending(stock.getProductId())));
+
+        final long unflushed = pendingDecreases.values().stream().filter(delta -> delta.get() != 0).count();
+        if (unflushed > 0) {
+            log.warn("in-memory stock decreases left unflushed after recovery. products={}", unflushed);
+        }
+        log.info("in-memory stock counters recovered. products={}", stocks.size());
+    }
+
+    public Map<Long, Long> getQuarantinedDecreases() {
+        final Map<Long, Long> quarantined = new LinkedHashMap<>();
+        quarantinedDecreases.forEach((productId, delta) -> quarantined.put(productId, delta.get()));
+        return Collections.unmodifiableMap(quarantined);
+    }
+
+    private void write(final Map<Long, Long> batch) {
+        final List<Long> missingProductIds = new ArrayList<>();
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> batch.forEach((productId, delta) ->
+                    apply(productId, delta, missingProductIds)));
+        } catch (RuntimeException e) {
+            log.warn("failed to flush in-memory stock decreases as a batch, retrying per product. products={}", batch.size(), e);
+            batch.forEach(this::writeOne);
+            return;
+        }
+
+        missingProductIds.forEach(this::dropMissing);
+    }
+
+    private void writeOne(final Long productId, final Long delta) {
+        final List<Long> missingProductIds = new ArrayList<>(1);
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> apply(productId, delta, missingProductIds));
+        } catch (RuntimeException e) {
+            if (TransientFailures.isTransient(e)) {
+                // 다음 flush 에서 다시 반영되도록 되돌려 놓는다.
+                pendingDecreases.computeIfAbsent(productId, key -> new AtomicLong()).addAndGet(delta);
+                return;
+            }
+            quarantine(productId, delta, e);
+            return;
+        }
+
+        missingProductIds.forEach(this::dropMissing);
+    }
+
+    private void apply(final Long productId, final Long delta, final List<Long> missingProductIds) {
+        final Stock stock = stockRepository.getByProductId(productId);
+        if (stock == null) {
+            missingProductIds.add(productId);
+            return;
+        }
+        // 음수는 입고분이 더 많은 경우
+        if (delta < 0) {
+            stock.increase(-delta);
+        } else {
+            stock.decrease(delta);
+        }
+    }
+
+    // Stock 행이 사라진 상품은 반영할 곳이 없으므로 카운터까지 버린다.
+    private void dropMissing(final Long productId) {
+        log.warn("stock row not found while flushing. productId={}", productId);
+        counters.remove(productId);
+    }
+
+    // 카운터가 DB 와 어긋났으므로 버리고, 다음 감소 요청에서 DB 기준으로 다시 적재한다.
+    private void quarantine(final Long productId, final Long delta, final RuntimeException e) {
+        log.error("quarantined in-memory stock decrease that cannot be applied. productId={}, delta={}", productId, delta, e);
+        quarantinedDecreases.computeIfAbsent(productId, key -> new AtomicLong()).addAndGet(delta);
+        counters.remove(productId);
+    }
+
+    private long pending(final Long productId) {
+        final AtomicLong delta = pendingDecreases.get(productId);
+        return delta == null ? 0 : delta.get();
+    }
+
+    // 아직 flush 되지 않은 감소분은 DB 에 없으므로 빼고 적재한다.
+    private Long loadQuantity(final Long productId) {
+        final Stock stock = stockRepository.getByProductId(productId);
+        if (stock == null) {
+            throw new StockNotFoundException();
+        }
+        return stock.getQuantity() - pending(productId);
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.stock.service;
+
+import com.example.stock.cache.StockChangePublisher;
+import com.example.stock.domain.StockMovement;
+import com.example.stock.ledger.StockBalance;
+import com.example.stock.ledger.StockCounters;
+import com.example.stock.ledger.StockMovementWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+/*
+    Stock row 하나를 UPDATE 하는 대신 재고 변동을 stock_movement 에 insert 만 하는 방식.
+    insert 는 서로 같은 row lock 을 두고 경쟁하지 않으므로 hot product 에서도 직렬화되지 않고, 모든 변동이 이력으로 남는다.
+
+    - 잔량 = Stock.quantity(snapshot) + 아직 compaction 되지 않은 movement 의 합
+    - 잔량은 StockCounters 에 들고 있다가 감소 전에 확인하고, movement 가 커밋된 뒤에 감소를 확정한다.
+    - compaction 은 주기적으로 movement 를 Stock 에 더하고 compacted 로 표시한다. (이력은 지우지 않는다)
+    InMemoryStockService 와 마찬가지로 잔량이 JVM 안에 있으므로 한 상품은 한 서버, 이 방식으로만 변경해야 한다.
+ */
+@Service
+public class LedgerStockService implements StockBusinessInterface, CounterStockService {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerStockService.class);
+
+    // 한 문장으로 읽어야 compaction 트랜잭션 전후가 섞이지 않는다.
+    private static final String SELECT_BALANCE =
+            "select s.quantity + coalesce((select sum(m.quantity) from stock_movement m " +
+            "where m.product_id = s.product_id and m.compacted = false), 0) " +
+            "from stock s where s.product_id = ?";
+
+    private static final String SELECT_UNCOMPACTED =
+            "select id, product_id, quantity from stock_movement where compacted = false order by id limit ?";
+
+    private static final String FOLD_INTO_STOCK =
+            "update stock set quantity = quantity + ?, version = version + 1 where product_id = ?";
+
+    private static final String MARK_COMPACTED =
+            "update stock_movement set compacted = true where id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final StockChangePublisher stockChangePublisher;
+
+    private final StockMovementWriter writer;
+
+    private final int compactionBatchSize;
+
+    private final StockCounters counters = new StockCounters();
+
+    public LedgerStockService(final JdbcTemplate jdbcTemplate,
+                              final TransactionTemplate transactionTemplate,
+                              final StockChangePublisher stockChangePublisher,
+                              @Value("${stock.ledger.write-batch-size:500}") final int writeBatchSize,
+                              @Value("${stock.ledger.queue-capacity:10000}") final int queueCapacity,
+                              @Value("${stock.ledger.compaction-batch-size:1000}") final int compactionBatchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.stockChangePublisher = stockChangePublisher;
+        this.writer = new StockMovementWriter(jdbcTemplate, transactionTemplate, writeBatchSize, queueCapacity);
+        this.compactionBatchSize = compactionBatchSize;
+    }
+
+    public void decrease(final Long id, final Long quantity) {
+        final StockBalance remaining = counters.decrease(id, quantity, this::loadBalance);
+        try {
+            await(writer.append(id, -quantity, StockMovement.Type.DECREASE));
+        } catch (RuntimeException e) {
+            // 기록되지 않은 감소는 되돌린다.
+            counters.increase(id, quantity, this::loadBalance);
+            throw e;
+        }
+        stockChangePublisher.changed(id, remaining);
+    }
+
+    public void restock(final Long id, final Long quantity) {
+        if (quantity == null || quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+
+        // 입고가 커밋된 뒤에 처음 적재하면 입고분이 두 번 더해지므로 먼저 적재해 둔다.
+        counters.increase(id, 0L, this::loadBalance);
+        await(writer.append(id, quantity, StockMovement.Type.RESTOCK));
+        stockChangePublisher.changed(id, counters.increase(id, quantity, this::loadBalance));
+    }
+
+    @Override
+    public Set<Long> findLoaded(final Collection<Long> ids) {
+        return ids.stream().filter(id -> counters.get(id) != null).collect(Collectors.toSet());
+    }
+
+    @Override
+    public boolean restockIfLoaded(final Long id, final Long quantity) {
+        if (counters.get(id) == null) {
+            return false;
+        }
+        restock(id, quantity);
+        return true;
+    }
+
+    public Long getQuantity(final Long id) {
+        final Long quantity = counters.get(id);
+        return quantity != null ? quantity : loadBalance(id);
+    }
+
+    /**
+     * 잔량 카운터를 버린다. 다음 요청에서 Stock 과 movement 기준으로 다시 적재된다.
+     */
+    public void recover() {
+        counters.clear();
+    }
+
+    /**
+     * 아직 반영되지 않은 movement 를 Stock 에 더한다. 잔량은 바뀌지 않으므로 카운터는 그대로 둔다.
+     * 읽은 movement 의 id 만 표시하므로 compaction 도중에 커밋된 movement 는 다음 compaction 에서 반영된다.
+     */
+    @Scheduled(fixedDelayString = "${stock.ledger.compaction-interval-ms:5000}")
+    public synchronized int compact() {
+        int compacted = 0;
+        while (true) {
+            final Integer folded = transactionTemplate.execute(status -> compactBatch());
+            compacted += folded == null ? 0 : folded;
+            if (folded == null || folded < compactionBatchSize) {
+                break;
+            }
+        }
+
+        if (compacted > 0) {
+            log.debug("stock movements compacted. movements={}", compacted);
+        }
+        return compacted;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdown();
+    }
+
+    private int compactBatch() {
+        final Map<Long, Long> deltas = new LinkedHashMap<>();
+        final List<Long> movementIds = jdbcTemplate.query(SELECT_UNCOMPACTED, (resultSet, rowNum) -> {
+            deltas.merge(resultSet.getLong("product_id"), resultSet.getLong("quantity"), Long::sum);
+            return resultSet.getLong("id");
+        }, compactionBatchSize);
+        if (movementIds.isEmpty()) {
+            return 0;
+        }
+
+        jdbcTemplate.batchUpdate(FOLD_INTO_STOCK, deltas.entrySet(), deltas.size(), (statement, delta) -> {
+            statement.setLong(1, delta.getValue());
+            statement.setLong(2, delta.getKey());
+        });
+        jdbcTemplate.batchUpdate(MARK_COMPACTED, movementIds, movementIds.size(),
+                (statement, movementId) -> statement.setLong(1, movementId));
+        return movementIds.size();
+    }
+
+    private Long loadBalance(final Long productId) {
+        try {
+            return jdbcTemplate.queryForObject(SELECT_BALANCE, Long.class, productId);
+        } catch (EmptyResultDataAccessException e) {
+            throw new StockNotFoundException();
+        }
+    }
+
+    private static void await(final CompletableFuture<Void> result) {
+        try {
+            result.join();
+        } catch (CompletionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
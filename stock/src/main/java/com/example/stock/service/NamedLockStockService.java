@@ -1,24 +1,42 @@
 package com.example.stock.service;
 
 import com.example.stock.domain.Stock;
+import com.example.stock.lock.ProductLockManager;
 import com.example.stock.repository.StockRepository;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 public class NamedLockStockService implements StockBusinessInterface{
 
     private final StockRepository stockRepository;
 
-    public NamedLockStockService(final StockRepository stockRepository) {
+    private final ProductLockManager productLockManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public NamedLockStockService(final StockRepository stockRepository,
+                                 final ProductLockManager productLockManager,
+                                 final PlatformTransactionManager transactionManager) {
         this.stockRepository = stockRepository;
+        this.productLockManager = productLockManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
     }
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public synchronized void decrease(final Long id, final Long quantity) {
-        final Stock stock = stockRepository.getByProductId(id);
-        stock.decrease(quantity);
-        stockRepository.saveAndFlush(stock);
+    // 상품별 lock 안에서 새 트랜잭션을 커밋까지 마친다. (StockNonSynchronizedService 참고)
+    public void decrease(final Long id, final Long quantity) {
+        productLockManager.lock(id);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                final Stock stock = stockRepository.getByProductId(id);
+                stock.decrease(quantity);
+                stockRepository.saveAndFlush(stock);
+            });
+        } finally {
+            productLockManager.unlock(id);
+        }
     }
 }
@@ -0,0 +1,58 @@
+package com.example.stock.service;
+
+import com.example.stock.domain.Stock;
+import com.example.stock.repository.PessimisticStockRepository;
+import com.example.stock.repository.StockRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/*
+    주문 하나에 담긴 여러 상품의 재고를 한 트랜잭션에서 모두 감소시킨다. (하나라도 부족하면 전체 rollback)
+    row lock 은 항상 productId 오름차순으로 잡으므로, 상품 순서가 다른 주문끼리 동시에 들어와도 deadlock 이 나지 않는다.
+ */
+@Service
+public class OrderStockService {
+
+    private final PessimisticStockRepository pessimisticStockRepository;
+
+    private final StockRepository stockRepository;
+
+    public OrderStockService(final PessimisticStockRepository pessimisticStockRepository,
+                             final StockRepository stockRepository) {
+        this.pessimisticStockRepository = pessimisticStockRepository;
+        this.stockRepository = stockRepository;
+    }
+
+    @Transactional
+    public void decreaseAll(final Map<Long, Long> quantities) {
+        sorted(quantities).forEach((productId, quantity) ->
+                decrease(pessimisticStockRepository.lockByProductId(productId), quantity));
+    }
+
+    /**
+     * 호출하는 쪽에서 모든 상품의 분산 lock 을 이미 잡았을 때 사용한다.
+     */
+    @Transactional
+    public void decreaseAllWithoutLock(final Map<Long, Long> quantities) {
+        sorted(quantities).forEach((productId, quantity) ->
+                decrease(stockRepository.getByProductId(productId), quantity));
+    }
+
+    public static SortedMap<Long, Long> sorted(final Map<Long, Long> quantities) {
+        if (quantities.isEmpty()) {
+            throw new IllegalArgumentException("Order has no items");
+        }
+        return new TreeMap<>(quantities);
+    }
+
+    private void decrease(final Stock stock, final Long quantity) {
+        if (stock == null) {
+            throw new StockNotFoundException();
+        }
+        stock.decrease(quantity);
+    }
+}
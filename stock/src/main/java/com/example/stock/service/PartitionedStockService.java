@@ -0,0 +1,65 @@
+package com.example.stock.service;
+
+import com.example.stock.domain.Stock;
+import com.example.stock.partition.ProductPartitionExecutor;
+import com.example.stock.repository.StockRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/*
+    요청 스레드가 lock 을 기다리며 묶여 있지 않도록 감소 요청을 상품별 단일 스레드 partition 에 넘기고 CompletableFuture 로 돌려준다.
+    한 상품의 변경은 항상 같은 partition 스레드가 처리하므로 JVM 안에서는 synchronized / DB lock 없이 직렬화된다.
+    단, 서버가 여러 대라면 서버 간에는 직렬화되지 않는다.
+ */
+@Service
+public class PartitionedStockService implements StockBusinessInterface {
+
+    private final StockRepository stockRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ProductPartitionExecutor executor;
+
+    public PartitionedStockService(final StockRepository stockRepository,
+                                   final TransactionTemplate transactionTemplate,
+                                   @Value("${stock.partition.count:0}") final int partitionCount,
+                                   @Value("${stock.partition.mailbox-capacity:10000}") final int mailboxCapacity) {
+        this.stockRepository = stockRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.executor = new ProductPartitionExecutor("stock-partition",
+                partitionCount > 0 ? partitionCount : Runtime.getRuntime().availableProcessors(),
+                mailboxCapacity);
+    }
+
+    /**
+     * 감소 후 남은 수량으로 완료된다.
+     * 재고가 부족하면 IllegalArgumentException, mailbox 가 가득 찼다면 RejectedExecutionException 으로 실패한다.
+     */
+    public CompletableFuture<Long> decreaseAsync(final Long id, final Long quantity) {
+        return executor.submit(id, () -> transactionTemplate.execute(status -> {
+            final Stock stock = stockRepository.getByProductId(id);
+            return stock.decrease(quantity);
+        }));
+    }
+
+    public void decrease(final Long id, final Long quantity) {
+        try {
+            decreaseAsync(id, quantity).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -1,25 +1,73 @@
 package com.example.stock.service;
 
 import com.example.stock.domain.Stock;
+import com.example.stock.metrics.StockMetrics;
+import com.example.stock.metrics.StrategyMetrics;
 import com.example.stock.repository.PessimisticStockRepository;
 import com.example.stock.repository.StockRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.List;
 
 @Service
 public class PessimisticLockStockService implements StockBusinessInterface {
 
     private PessimisticStockRepository stockRepository;
 
-    public PessimisticLockStockService(final PessimisticStockRepository stockRepository) {
+    private final TransactionTemplate transactionTemplate;
+
+    private final StrategyMetrics metrics;
+
+    public PessimisticLockStockService(final PessimisticStockRepository stockRepository,
+                                       final TransactionTemplate transactionTemplate,
+                                       final StockMetrics stockMetrics) {
         this.stockRepository = stockRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.metrics = stockMetrics.forStrategy("pessimistic");
     }
 
-    @Transactional
+    // row lock 은 커밋 시점에 풀리므로 트랜잭션 밖에서 커밋이 끝날 때까지를 lock 보유 시간 / 트랜잭션 시간으로 측정한다.
     public void decrease(final Long id, final Long quantity) {
-        Stock stock = stockRepository.getByProductId(id);
+        final long start = System.nanoTime();
+        final Long[] holdStart = new Long[1];
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                final Stock stock = stockRepository.lockByProductId(id);
+                holdStart[0] = metrics.lockAcquired(id, start);
+                stock.decrease(quantity);
+            });
+        } catch (IllegalArgumentException e) {
+            metrics.rejected();
+            throw e;
+        } finally {
+            if (holdStart[0] != null) {
+                metrics.lockReleased(holdStart[0]);
+            }
+            metrics.transactionCompleted(start);
+        }
+    }
+
+    /*
+        여러 감소 요청을 한 번의 row lock 과 한 번의 UPDATE 로 처리한다.
+        요청은 도착 순서대로 적용하며, 남은 수량이 부족한 요청만 실패(false)로 표시하고 나머지는 그대로 반영한다.
+     */
+    @Transactional
+    public List<Boolean> decreaseInOrder(final Long id, final List<Long> quantities) {
+        final Stock stock = stockRepository.lockByProductId(id);
+        final List<Boolean> results = new ArrayList<>(quantities.size());
+
+        for (final Long quantity : quantities) {
+            final boolean enough = stock.getQuantity() >= quantity;
+            if (enough) {
+                stock.decrease(quantity);
+            }
+            results.add(enough);
+        }
 
-        stock.decrease(quantity);
+        return results;
     }
 }
@@ -0,0 +1,169 @@
+package com.example.stock.service;
+
+import com.example.stock.cache.StockChangePublisher;
+import com.example.stock.domain.Stock;
+import com.example.stock.ledger.StockBalance;
+import com.example.stock.repository.InflightDecreases;
+import com.example.stock.repository.RedisStockRepository;
+import com.example.stock.repository.StockRepository;
+import com.example.stock.retry.TransientFailures;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/*
+    Lettuce spin lock + DB 트랜잭션 대신, Redis 에 있는 재고를 Lua 스크립트 한 번으로 확인하고 감소시킨다.
+    Redis 가 단일 스레드로 스크립트를 실행하므로 별도의 lock 이 필요 없고, round trip 도 한 번이다.
+    Stock 테이블은 sync 주기마다 누적된 감소분을 배치로 반영받는다.
+    배치 반영이 실패하면 상품마다 따로 반영하고, 일시적인 실패만 pending 으로 되돌려 재시도한다.
+    그 외의 실패는 quarantined hash 로 격리해서 반영할 수 없는 상품 하나가 나머지를 막지 않게 한다.
+    다른 서버가 꺼낸 뒤 반영을 끝내지 못하고 죽은 감소분은 inflight timeout 이 지나면 sync 가 pending 으로 되돌린다.
+ */
+@Service
+public class RedisScriptStockService implements StockBusinessInterface, CounterStockService {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisScriptStockService.class);
+
+    private final RedisStockRepository redisStockRepository;
+
+    private final StockRepository stockRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final StockChangePublisher stockChangePublisher;
+
+    private final long inflightTimeoutMillis;
+
+    public RedisScriptStockService(final RedisStockRepository redisStockRepository,
+                                   final StockRepository stockRepository,
+                                   final TransactionTemplate transactionTemplate,
+                                   final StockChangePublisher stockChangePublisher,
+                                   @Value("${stock.redis-script.inflight-timeout-ms:60000}") final long inflightTimeoutMillis) {
+        this.redisStockRepository = redisStockRepository;
+        this.stockRepository = stockRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.stockChangePublisher = stockChangePublisher;
+        this.inflightTimeoutMillis = inflightTimeoutMillis;
+    }
+
+    public void decrease(final Long id, final Long quantity) {
+        StockBalance remaining = redisStockRepository.decrease(id, quantity);
+
+        if (remaining.getQuantity() == RedisStockRepository.NOT_LOADED) {
+            load(id);
+            remaining = redisStockRepository.decrease(id, quantity);
+        }
+
+        if (remaining.getQuantity() == RedisStockRepository.NOT_ENOUGH_STOCK) {
+            throw new IllegalArgumentException("Not enough stock");
+        }
+        // DB 보다 Redis 가 앞서 있으므로 남은 수량을 바로 알린다.
+        stockChangePublisher.changed(id, remaining);
+    }
+
+    @Override
+    public Set<Long> findLoaded(final Collection<Long> ids) {
+        return redisStockRepository.findLoaded(ids);
+    }
+
+    @Override
+    public boolean restockIfLoaded(final Long id, final Long quantity) {
+        final StockBalance remaining = redisStockRepository.restock(id, quantity);
+        if (remaining.getQuantity() == RedisStockRepository.NOT_LOADED) {
+            return false;
+        }
+        stockChangePublisher.changed(id, remaining);
+        return true;
+    }
+
+    /**
+     * 누적된 감소분을 먼저 반영한 뒤 Redis 의 재고를 버린다. 다음 감소 요청 시 Stock 테이블에서 다시 적재된다.
+     * 반영한 뒤에 들어온 감소분이 남아 있으면 버리지 않고 false 를 반환한다. (버리면 DB 에서 다시 적재할 때 그만큼 다시 팔린다)
+     */
+    public synchronized boolean evict(final Long id) {
+        sync();
+        return redisStockRepository.deleteIfSynced(id);
+    }
+
+    @Scheduled(fixedDelayString = "${stock.redis-script.sync-interval-ms:500}")
+    public synchronized void sync() {
+        reclaimStaleDecreases();
+
+        final InflightDecreases inflight = redisStockRepository.drainPendingDecreases();
+        if (inflight.isEmpty()) {
+            return;
+        }
+
+        final Map<Long, Long> decreases = inflight.getDecreases();
+        try {
+            transactionTemplate.executeWithoutResult(status -> decreases.forEach(this::apply));
+        } catch (RuntimeException e) {
+            log.warn("failed to sync redis stock decreases as a batch, retrying per product. products={}", decreases.size(), e);
+            decreases.forEach((productId, quantity) -> syncOne(inflight, productId, quantity));
+            return;
+        }
+        // 커밋 이후의 Redis 오류로 같은 감소분을 다시 반영하지 않도록 try 밖에서 정리한다.
+        decreases.keySet().forEach(productId -> complete(inflight, productId));
+    }
+
+    private void syncOne(final InflightDecreases inflight, final Long productId, final Long quantity) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> apply(productId, quantity));
+        } catch (RuntimeException e) {
+            if (TransientFailures.isTransient(e)) {
+                redisStockRepository.restorePendingDecrease(inflight, productId);
+                return;
+            }
+            log.error("quarantined redis stock decrease that cannot be applied. productId={}, quantity={}", productId, quantity, e);
+            redisStockRepository.quarantine(inflight, productId);
+            return;
+        }
+        complete(inflight, productId);
+    }
+
+    private void complete(final InflightDecreases inflight, final Long productId) {
+        if (!redisStockRepository.completePendingDecrease(inflight, productId)) {
+            // 반영하는 동안 timeout 이 지나 pending 으로 되돌아갔으므로 다음 sync 에서 한 번 더 반영된다.
+            log.error("redis stock decrease was reclaimed before its sync completed and will be applied again. "
+                    + "productId={}, quantity={}", productId, inflight.getDecreases().get(productId));
+        }
+    }
+
+    // 꺼낸 서버가 반영을 끝내지 못하고 죽은 묶음을 되돌린다. 기동 직후의 sync 에서도 실행된다.
+    private void reclaimStaleDecreases() {
+        final long reclaimed = redisStockRepository.reclaimStaleDecreases(inflightTimeoutMillis);
+        if (reclaimed > 0) {
+            log.warn("reclaimed stale inflight redis stock decreases. batches={}", reclaimed);
+        }
+    }
+
+    private void apply(final Long productId, final Long quantity) {
+        final Stock stock = stockRepository.getByProductId(productId);
+        if (stock == null) {
+            log.warn("stock row not found while syncing from redis. productId={}", productId);
+            return;
+        }
+        // 음수는 입고분이 더 많은 경우
+        if (quantity < 0) {
+            stock.increase(-quantity);
+        } else {
+            stock.decrease(quantity);
+        }
+    }
+
+    private void load(final Long id) {
+        final Stock stock = stockRepository.getByProductId(id);
+        if (stock == null) {
+            throw new StockNotFoundException();
+        }
+        // 다른 서버가 먼저 적재했다면 그 값을 그대로 사용한다.
+        redisStockRepository.initialize(id, stock.getQuantity());
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.stock.service;
+
+import com.example.stock.cache.StockChangePublisher;
+import com.example.stock.domain.Stock;
+import com.example.stock.domain.StockBucket;
+import com.example.stock.repository.PessimisticStockRepository;
+import com.example.stock.repository.StockBucketRepository;
+import com.example.stock.repository.StockRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+    하나의 Stock row 에 모든 요청이 몰리지 않도록 hot product 의 재고를 N 개의 bucket row 로 나눈다.
+    감소 요청은 bucket 하나를 골라(random / thread affinity) 그 row 만 잠그는 조건부 UPDATE 로 처리하고,
+    고른 bucket 이 부족하면 다른 bucket 을 차례로 시도한다.
+    어느 bucket 하나로도 부족하면 Stock row 와 모든 bucket 을 bucketNo 순서로 잠근 뒤 합계에서 감소시키고 균등하게 재분배한다.
+    bucket 수는 상품마다 shard(productId, buckets) 로 정한다.
+    bucket 수 캐시는 다른 서버의 shard / unshard 를 모르므로 힌트로만 쓰고, 재분배 트랜잭션에서 잠근 bucket 으로 바로잡는다.
+    sharding 되지 않은 상품(0) 은 캐시하지 않고 Stock row 에서 바로 감소시킨다.
+ */
+@Service
+public class ShardedStockService implements StockBusinessInterface {
+
+    private final StockRepository stockRepository;
+
+    private final PessimisticStockRepository pessimisticStockRepository;
+
+    private final StockBucketRepository bucketRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final StockChangePublisher stockChangePublisher;
+
+    private final boolean threadAffinity;
+
+    private final ConcurrentMap<Long, Integer> bucketCounts = new ConcurrentHashMap<>();
+
+    public ShardedStockService(final StockRepository stockRepository,
+                               final PessimisticStockRepository pessimisticStockRepository,
+                               final StockBucketRepository bucketRepository,
+                               final TransactionTemplate transactionTemplate,
+                               final StockChangePublisher stockChangePublisher,
+                               @Value("${stock.sharding.selection:random}") final String selection) {
+        this.stockRepository = stockRepository;
+        this.pessimisticStockRepository = pessimisticStockRepository;
+        this.bucketRepository = bucketRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.stockChangePublisher = stockChangePublisher;
+        this.threadAffinity = "thread".equalsIgnoreCase(selection);
+    }
+
+    public void decrease(final Long id, final Long quantity) {
+        final int buckets = bucketCount(id);
+        if (buckets == 0) {
+            decreaseUnsharded(id, quantity);
+            stockChangePublisher.invalidate(id);
+            return;
+        }
+
+        final int start = pickBucket(buckets);
+        for (int i = 0; i < buckets; i++) {
+            final int bucketNo = (start + i) % buckets;
+            final Integer updated = transactionTemplate.execute(status -> bucketRepository.decrease(id, bucketNo, quantity));
+            if (updated != null && updated > 0) {
+                stockChangePublisher.invalidate(id);
+                return;
+            }
+        }
+
+        rebalanceAndDecrease(id, quantity);
+        stockChangePublisher.invalidate(id);
+    }
+
+    /**
+     * Stock row 와 기존 bucket 의 수량을 모두 모아서 buckets 개의 bucket 에 균등하게 나눈다.
+     */
+    public void shard(final Long id, final int buckets) {
+        if (buckets < 1) {
+            throw new IllegalArgumentException("Bucket count must be positive");
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            final Stock stock = pessimisticStockRepository.lockByProductId(id);
+            final List<StockBucket> current = bucketRepository.findAllWithLockByProductIdOrderByBucketNo(id);
+
+            final long total = stock.getQuantity() + sum(current);
+            stock.decrease(stock.getQuantity());
+            bucketRepository.deleteAllInBatch(current);
+
+            final List<StockBucket> sharded = new ArrayList<>(buckets);
+            for (int bucketNo = 0; bucketNo < buckets; bucketNo++) {
+                sharded.add(new StockBucket(id, bucketNo, share(total, buckets, bucketNo)));
+            }
+            bucketRepository.saveAll(sharded);
+        });
+        bucketCounts.put(id, buckets);
+    }
+
+    /**
+     * bucket 에 나눠 둔 수량을 Stock row 로 되돌린다.
+     */
+    public void unshard(final Long id) {
+        transactionTemplate.executeWithoutResult(status -> {
+            final Stock stock = pessimisticStockRepository.lockByProductId(id);
+            final List<StockBucket> current = bucketRepository.findAllWithLockByProductIdOrderByBucketNo(id);
+
+            stock.increase(sum(current));
+            bucketRepository.deleteAllInBatch(current);
+        });
+        bucketCounts.remove(id);
+    }
+
+    public Long getQuantity(final Long id) {
+        final Stock stock = stockRepository.getByProductId(id);
+        if (stock == null) {
+            throw new StockNotFoundException();
+        }
+        return stock.getQuantity() + sum(bucketRepository.findAllByProductIdOrderByBucketNo(id));
+    }
+
+    // shard() 와 같은 순서(Stock row -> bucket)로 잠근다. 입고로 Stock row 에 들어온 수량도 함께 재분배한다.
+    private void rebalanceAndDecrease(final Long id, final Long quantity) {
+        transactionTemplate.executeWithoutResult(status -> {
+            final Stock stock = pessimisticStockRepository.lockByProductId(id);
+            final List<StockBucket> buckets = bucketRepository.findAllWithLockByProductIdOrderByBucketNo(id);
+
+            if (buckets.isEmpty()) {
+                // 다른 서버가 unshard 했다. 재고는 Stock row 로 돌아가 있다.
+                bucketCounts.remove(id);
+                stock.decrease(quantity);
+                return;
+            }
+            bucketCounts.put(id, buckets.size());
+
+            final long total = stock.getQuantity() + sum(buckets);
+            if (total < quantity) {
+                throw new IllegalArgumentException("Not enough stock");
+            }
+
+            final long remaining = total - quantity;
+            stock.decrease(stock.getQuantity());
+            for (int i = 0; i < buckets.size(); i++) {
+                buckets.get(i).changeQuantity(share(remaining, buckets.size(), i));
+            }
+        });
+    }
+
+    // bucket 수를 읽은 뒤 Stock row 를 잠그기 전에 shard() 가 끝났다면 Stock row 는 이미 비어 있다.
+    // 부족하다고 판단하기 전에 bucket 이 생겼는지 다시 보고, 생겼으면 bucket 합계에서 감소시킨다.
+    private void decreaseUnsharded(final Long id, final Long quantity) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> pessimisticStockRepository.lockByProductId(id).decrease(quantity));
+        } catch (IllegalArgumentException e) {
+            if (bucketRepository.countByProductId(id) == 0) {
+                throw e;
+            }
+            rebalanceAndDecrease(id, quantity);
+        }
+    }
+
+    private int bucketCount(final Long id) {
+        final Integer cached = bucketCounts.get(id);
+        if (cached != null) {
+            return cached;
+        }
+
+        final int buckets = (int) bucketRepository.countByProductId(id);
+        if (buckets > 0) {
+            bucketCounts.putIfAbsent(id, buckets);
+        }
+        return buckets;
+    }
+
+    private int pickBucket(final int buckets) {
+        if (threadAffinity) {
+            return (int) (Thread.currentThread().getId() % buckets);
+        }
+        return ThreadLocalRandom.current().nextInt(buckets);
+    }
+
+    // 앞쪽 bucket 부터 나머지를 하나씩 더 가져간다.
+    private static long share(final long total, final int buckets, final int bucketNo) {
+        return total / buckets + (bucketNo < total % buckets ? 1 : 0);
+    }
+
+    private static long sum(final List<StockBucket> buckets) {
+        return buckets.stream().mapToLong(StockBucket::getQuantity).sum();
+    }
+}
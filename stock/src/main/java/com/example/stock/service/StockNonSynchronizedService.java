@@ -1,21 +1,41 @@
 package com.example.stock.service;
 
 import com.example.stock.domain.Stock;
+import com.example.stock.lock.ProductLockManager;
 import com.example.stock.repository.StockRepository;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 public class StockNonSynchronizedService implements StockBusinessInterface {
     private final StockRepository stockRepository;
 
-    public StockNonSynchronizedService(final StockRepository stockRepository) {
-            this.stockRepository = stockRepository;
+    private final ProductLockManager productLockManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public StockNonSynchronizedService(final StockRepository stockRepository,
+                                       final ProductLockManager productLockManager,
+                                       final TransactionTemplate transactionTemplate) {
+        this.stockRepository = stockRepository;
+        this.productLockManager = productLockManager;
+        this.transactionTemplate = transactionTemplate;
     }
 
-    @Transactional
-    public synchronized void decrease(final Long productId, final Long quantity) {
-        final Stock stock = stockRepository.getByProductId(productId);
-        stock.decrease(quantity);
+    /*
+        @Transactional + synchronized 는 lock 을 푼 뒤에 커밋되므로 다음 스레드가 커밋 전의 값을 읽을 수 있다.
+        상품별 lock 안에서 트랜잭션을 열고 커밋까지 마친다.
+        분산 lock facade 에서 이미 같은 상품의 lock 을 잡고 들어오면 재진입만 한다.
+     */
+    public void decrease(final Long productId, final Long quantity) {
+        productLockManager.lock(productId);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                final Stock stock = stockRepository.getByProductId(productId);
+                stock.decrease(quantity);
+            });
+        } finally {
+            productLockManager.unlock(productId);
+        }
     }
 }
@@ -0,0 +1,9 @@
+package com.example.stock.service;
+
+// 재고 row 가 없는 상품. 재고 부족(409) 과 구분해 404 로 응답한다.
+public class StockNotFoundException extends IllegalArgumentException {
+
+    public StockNotFoundException() {
+        super("Stock not found");
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.stock.service;
+
+import com.example.stock.cache.StockChangedEvent;
+import com.example.stock.repository.StockRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+    재고 조회("몇 개 남았나", "품절인가")를 위한 read path.
+    크기와 만료 시간이 정해진 near cache 에서 먼저 찾고, 없을 때만 DB 를 읽는다.
+    bucket(sharding) 과 compaction 전의 movement(ledger) 도 한 번의 조회로 합산한다.
+    감소 경로가 StockChangePublisher 로 알린 값은 바로 반영하고, 다른 서버의 변경은 채널로 받아 무효화한다.
+    품절(0) 은 재입고 전까지 바뀌지 않으므로 더 오래 보관한다. 재입고 역시 변경 알림으로 바로 지워진다.
+    오래 보관하는 값은 이 서버에서 알린 품절과 DB 에서 읽은 품절뿐이다. 다른 서버의 품절 메시지는 값으로 쓰지 않는다.
+    이 서버의 카운터가 알린 값은 version 순서대로만 들어온다. (입고보다 늦게 알려진 품절은 StockChangePublisher 가 버린다)
+ */
+@Service
+public class StockQueryService {
+
+    private final StockRepository stockRepository;
+
+    private final Cache<Long, Long> quantities;
+
+    public StockQueryService(final StockRepository stockRepository,
+                             @Value("${stock.cache.maximum-size:100000}") final long maximumSize,
+                             @Value("${stock.cache.ttl-ms:1000}") final long ttlMillis,
+                             @Value("${stock.cache.sold-out-ttl-ms:600000}") final long soldOutTtlMillis) {
+        this.stockRepository = stockRepository;
+        this.quantities = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new QuantityExpiry(TimeUnit.MILLISECONDS.toNanos(ttlMillis),
+                        TimeUnit.MILLISECONDS.toNanos(soldOutTtlMillis)))
+                .build();
+    }
+
+    public Long getQuantity(final Long productId) {
+        return quantities.get(productId, this::loadQuantity);
+    }
+
+    public boolean isAvailable(final Long productId, final Long quantity) {
+        return getQuantity(productId) >= quantity;
+    }
+
+    public boolean isSoldOut(final Long productId) {
+        return getQuantity(productId) == 0;
+    }
+
+    @EventListener
+    public void onStockChanged(final StockChangedEvent event) {
+        // 다른 서버의 메시지는 순서가 보장되지 않으므로 품절(0) 이라도 값을 덮어쓰지 않고 지우기만 한다.
+        // 재입고 뒤에 늦게 도착한 0 이 오래 보관되면 그동안 남은 재고가 보이지 않는다.
+        if (event.getQuantity() != null && !event.isRemote()) {
+            quantities.put(event.getProductId(), event.getQuantity());
+            return;
+        }
+        quantities.invalidate(event.getProductId());
+    }
+
+    public void invalidateAll() {
+        quantities.invalidateAll();
+    }
+
+    private Long loadQuantity(final Long productId) {
+        final Long quantity = stockRepository.findAvailableQuantity(productId);
+        if (quantity == null) {
+            throw new StockNotFoundException();
+        }
+        return quantity;
+    }
+
+    private static class QuantityExpiry implements Expiry<Long, Long> {
+
+        private final long ttlNanos;
+
+        private final long soldOutTtlNanos;
+
+        private QuantityExpiry(final long ttlNanos, final long soldOutTtlNanos) {
+            this.ttlNanos = ttlNanos;
+            this.soldOutTtlNanos = soldOutTtlNanos;
+        }
+
+        @Override
+        public long expireAfterCreate(final Long productId, final Long quantity, final long currentTime) {
+            return quantity == 0 ? soldOutTtlNanos : ttlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(final Long productId, final Long quantity, final long currentTime,
+                                      final long currentDuration) {
+            return expireAfterCreate(productId, quantity, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(final Long productId, final Long quantity, final long currentTime,
+                                    final long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
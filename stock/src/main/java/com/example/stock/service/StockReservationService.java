@@ -0,0 +1,138 @@
+package com.example.stock.service;
+
+import com.example.stock.domain.Stock;
+import com.example.stock.domain.StockReservation;
+import com.example.stock.repository.PessimisticStockRepository;
+import com.example.stock.repository.StockReservationRepository;
+import com.example.stock.reservation.ReservationExpiryWheel;
+import com.example.stock.reservation.ReservationStateException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+    결제 전에 재고를 바로 차감하지 않고 TTL 이 있는 예약(hold)으로 잡아 둔다.
+    hot row 의 lock 은 reserve 의 짧은 UPDATE 동안만 잡히고, 결제 결과에 따라 confirm / release 한다.
+    confirm 도 release 도 되지 않은 예약은 timing wheel 이 만료시켜 배치로 되돌린다.
+    wheel 은 예약을 받은 서버의 메모리에만 있으므로, 그 서버가 죽은 경우는 주기적인 DB sweep 이 만료시킨다.
+
+    lock 순서는 항상 reservation row -> stock row (productId 오름차순) 이다.
+ */
+@Service
+public class StockReservationService {
+
+    private static final Logger log = LoggerFactory.getLogger(StockReservationService.class);
+
+    private final PessimisticStockRepository stockRepository;
+
+    private final StockReservationRepository reservationRepository;
+
+    private final ReservationExpiryWheel expiryWheel;
+
+    public StockReservationService(final PessimisticStockRepository stockRepository,
+                                   final StockReservationRepository reservationRepository,
+                                   final ReservationExpiryWheel expiryWheel) {
+        this.stockRepository = stockRepository;
+        this.reservationRepository = reservationRepository;
+        this.expiryWheel = expiryWheel;
+    }
+
+    @Transactional
+    public StockReservation reserve(final Long productId, final Long quantity, final Duration ttl) {
+        final Stock stock = stockRepository.lockByProductId(productId);
+        if (stock == null) {
+            throw new StockNotFoundException();
+        }
+        stock.reserve(quantity);
+
+        final StockReservation reservation = reservationRepository.save(
+                new StockReservation(productId, quantity, Instant.now().plus(ttl)));
+
+        // rollback 된 예약이 wheel 에 남지 않도록 커밋된 뒤에 등록한다.
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                expiryWheel.schedule(reservation.getId(), reservation.getExpiresAt());
+            }
+        });
+        return reservation;
+    }
+
+    @Transactional
+    public void confirm(final Long reservationId) {
+        final StockReservation reservation = getHeld(reservationId);
+        reservation.changeStatus(StockReservation.Status.CONFIRMED);
+        final Stock stock = stockRepository.lockByProductId(reservation.getProductId());
+        if (stock == null) {
+            throw new StockNotFoundException();
+        }
+        stock.confirmReservation(reservation.getQuantity());
+    }
+
+    @Transactional
+    public void release(final Long reservationId) {
+        final StockReservation reservation = getHeld(reservationId);
+        reservation.changeStatus(StockReservation.Status.RELEASED);
+        // 재고 row 가 없으면 되돌릴 곳이 없으므로 예약만 해제한다.
+        final Stock stock = stockRepository.lockByProductId(reservation.getProductId());
+        if (stock != null) {
+            stock.releaseReservation(reservation.getQuantity());
+        }
+    }
+
+    /**
+     * 만료 대상 예약 중 아직 HELD 상태인 것만 한 트랜잭션에서 되돌리고, 만료시킨 개수를 반환한다.
+     * 이미 confirm / release 된 예약은 건너뛴다.
+     * 재고 row 가 지워진 상품의 예약은 되돌릴 곳이 없으므로 만료 처리만 한다. 그대로 두면 배치 전체가 매 tick 실패한다.
+     */
+    @Transactional
+    public int expire(final Collection<Long> reservationIds) {
+        final List<StockReservation> reservations = reservationRepository.findAllWithLockByIdInAndStatusOrderById(
+                reservationIds, StockReservation.Status.HELD);
+
+        final Map<Long, Long> releasedQuantities = new TreeMap<>();
+        for (final StockReservation reservation : reservations) {
+            reservation.changeStatus(StockReservation.Status.EXPIRED);
+            releasedQuantities.merge(reservation.getProductId(), reservation.getQuantity(), Long::sum);
+        }
+
+        releasedQuantities.forEach((productId, quantity) -> {
+            final Stock stock = stockRepository.lockByProductId(productId);
+            if (stock == null) {
+                log.warn("stock not found while expiring reservations. productId={}, quantity={}", productId, quantity);
+                return;
+            }
+            stock.releaseReservation(quantity);
+        });
+        return reservations.size();
+    }
+
+    public List<StockReservation> findHeld() {
+        return reservationRepository.findAllByStatus(StockReservation.Status.HELD);
+    }
+
+    public List<Long> findExpiredHeldIds(final Instant expiredBefore, final int limit) {
+        return reservationRepository.findIdsByStatusAndExpiresAtBefore(
+                StockReservation.Status.HELD, expiredBefore, PageRequest.of(0, limit));
+    }
+
+    private StockReservation getHeld(final Long reservationId) {
+        final StockReservation reservation = reservationRepository.findWithLockById(reservationId)
+                .orElseThrow(() -> new IllegalArgumentException("Reservation not found"));
+        if (!reservation.isHeld()) {
+            throw new ReservationStateException(reservation.getStatus());
+        }
+        return reservation;
+    }
+}
@@ -1,6 +1,9 @@
 package com.example.stock.service;
 
 import com.example.stock.domain.Stock;
+import com.example.stock.lock.ProductLockManager;
+import com.example.stock.metrics.StockMetrics;
+import com.example.stock.metrics.StrategyMetrics;
 import com.example.stock.repository.StockRepository;
 import org.springframework.stereotype.Service;
 
@@ -11,8 +14,16 @@ public class StockService implements StockBusinessInterface {
 
     private StockRepository stockRepository;
 
-    public StockService(final StockRepository stockRepository) {
+    private final ProductLockManager productLockManager;
+
+    private final StrategyMetrics metrics;
+
+    public StockService(final StockRepository stockRepository,
+                        final ProductLockManager productLockManager,
+                        final StockMetrics stockMetrics) {
         this.stockRepository = stockRepository;
+        this.productLockManager = productLockManager;
+        this.metrics = stockMetrics.forStrategy("synchronized");
     }
 
     /*
@@ -33,13 +44,26 @@ public class StockService implements StockBusinessInterface {
     // 중복되는 코드가 줄어들고 보기 쉬워지죠. 이러한 이유에서 @Transactional을 사용한다.
     */
     //@Transactional
-    public synchronized void decrease(final Long id, final Long quantity) {
+    public void decrease(final Long id, final Long quantity) {
         // 1. get stock
         // 2. decrease stock
         // 3. save stock
 
-        final Stock stock = stockRepository.getByProductId(id);
-        stock.decrease(quantity);
-        stockRepository.saveAndFlush(stock);
+        // bean 전체의 monitor(synchronized) 대신 상품별 lock 을 걸어서 다른 상품끼리는 기다리지 않는다.
+        final long waitStart = System.nanoTime();
+        productLockManager.lock(id);
+        final long holdStart = metrics.lockAcquired(id, waitStart);
+        try {
+            final Stock stock = stockRepository.getByProductId(id);
+            stock.decrease(quantity);
+            stockRepository.saveAndFlush(stock);
+            metrics.transactionCompleted(holdStart);
+        } catch (IllegalArgumentException e) {
+            metrics.rejected();
+            throw e;
+        } finally {
+            productLockManager.unlock(id);
+            metrics.lockReleased(holdStart);
+        }
     }
 }
@@ -0,0 +1,100 @@
+package com.example.stock.adaptive;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductContentionTest {
+
+    private static final long START_MILLIS = 10_000;
+
+    // 100ms slot 10개, 매 요청마다 평가, 전환 후 500ms 유지
+    private ProductContention contention() {
+        final AdaptiveProperties properties = new AdaptiveProperties();
+        properties.setWindowMillis(1_000);
+        properties.setWindowSlots(10);
+        properties.setEvaluateIntervalMillis(0);
+        properties.setMinDwellMillis(500);
+        return new ProductContention(properties, START_MILLIS);
+    }
+
+    // n 개의 요청이 겹쳐서 처리된다. 도착 시점의 동시 처리 수는 0, 1, ..., n-1 이다.
+    private void burst(final ProductContention contention, final long nowMillis, final int n, final boolean conflict) {
+        IntStream.range(0, n).forEach(i -> contention.started(nowMillis));
+        IntStream.range(0, n).forEach(i -> contention.finished(nowMillis, 1_000_000, true, conflict));
+    }
+
+    @DisplayName("생성 직후에도 optimistic 충돌이 많으면 minDwell 을 기다리지 않고 pessimistic 으로 올린다")
+    @Test
+    void 생성_직후의_충돌로_바로_올린다() {
+        // given
+        final ProductContention contention = contention();
+
+        // when
+        burst(contention, START_MILLIS, 1, true);
+
+        // then
+        assertThat(contention.mode()).isEqualTo(StockLockMode.PESSIMISTIC);
+    }
+
+    @DisplayName("동시 처리 수가 올리는 기준과 내리는 기준 사이면 현재 모드를 유지한다")
+    @Test
+    void 두_기준_사이에서는_모드를_유지한다() {
+        // given - 평균 1.5 는 올리는 기준(2.0) 아래
+        final ProductContention contention = contention();
+        burst(contention, START_MILLIS, 4, false);
+        assertThat(contention.mode()).isEqualTo(StockLockMode.OPTIMISTIC);
+
+        // when - 평균 2.1 로 올린 뒤, 평균 1.93 (내리는 기준 1.2 위) 이 된다.
+        burst(contention, START_MILLIS, 6, false);
+        assertThat(contention.mode()).isEqualTo(StockLockMode.PESSIMISTIC);
+        burst(contention, START_MILLIS + 500, 4, false);
+
+        // then
+        assertThat(contention.mode()).isEqualTo(StockLockMode.PESSIMISTIC);
+
+        // 첫 burst 가 window 를 벗어나 평균이 1.2 아래로 내려가면 optimistic 으로 돌아온다.
+        burst(contention, START_MILLIS + 1_400, 1, false);
+        assertThat(contention.mode()).isEqualTo(StockLockMode.PESSIMISTIC);
+        burst(contention, START_MILLIS + 1_400, 1, false);
+        assertThat(contention.mode()).isEqualTo(StockLockMode.OPTIMISTIC);
+    }
+
+    @DisplayName("전환한 뒤 minDwell 동안은 경합이 줄어도 내리지 않고, 지나면 내린다")
+    @Test
+    void minDwell_동안은_내리지_않는다() {
+        // given
+        final ProductContention contention = contention();
+        burst(contention, START_MILLIS, 5, false);
+        assertThat(contention.mode()).isEqualTo(StockLockMode.PESSIMISTIC);
+
+        // when - 평균 0.4 로 내려가지만 아직 minDwell 이 지나지 않았다.
+        IntStream.range(0, 20).forEach(i -> burst(contention, START_MILLIS + 100, 1, false));
+
+        // then
+        assertThat(contention.mode()).isEqualTo(StockLockMode.PESSIMISTIC);
+
+        burst(contention, START_MILLIS + 500, 1, false);
+        assertThat(contention.mode()).isEqualTo(StockLockMode.OPTIMISTIC);
+    }
+
+    @DisplayName("동시 처리 수가 아주 높으면 coalescing 으로 올리고, 줄어들면 pessimistic 으로 내린다")
+    @Test
+    void coalescing_으로_올렸다가_내린다() {
+        // given
+        final ProductContention contention = contention();
+
+        // when - 평균 16
+        burst(contention, START_MILLIS, 33, false);
+        assertThat(contention.mode()).isEqualTo(StockLockMode.COALESCING);
+
+        // then - window 가 지나 평균 0 이 되면 한 단계씩 내려온다.
+        burst(contention, START_MILLIS + 1_000, 1, false);
+        assertThat(contention.mode()).isEqualTo(StockLockMode.PESSIMISTIC);
+        burst(contention, START_MILLIS + 1_500, 1, false);
+        assertThat(contention.mode()).isEqualTo(StockLockMode.OPTIMISTIC);
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.stock.hotkey;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HotKeyDetectorTest {
+
+    private final List<Object> events = new ArrayList<>();
+
+    private HotKeyDetector detector(final int topK, final long requestThreshold) {
+        final HotKeyProperties properties = new HotKeyProperties();
+        properties.setTopK(topK);
+        properties.setRequestThreshold(requestThreshold);
+        return new HotKeyDetector(properties, events::add);
+    }
+
+    @DisplayName("상품이 많아도 요청이 몰린 상위 K 개만 요청 수 순서로 추적한다")
+    @Test
+    void 상위_K개만_추적한다() {
+        // given
+        final HotKeyDetector detector = detector(3, 1_000);
+
+        // when
+        IntStream.range(0, 500).forEach(i -> detector.recordRequest(7L));
+        LongStream.range(100, 10_100).forEach(detector::recordRequest);
+        IntStream.range(0, 300).forEach(i -> detector.recordRequest(8L));
+
+        // then
+        final List<HotProduct> hottest = detector.hottest();
+        assertThat(hottest).hasSize(3);
+        assertThat(hottest.stream().map(HotProduct::getProductId).limit(2).collect(Collectors.toList()))
+                .containsExactly(7L, 8L);
+        // count-min sketch 는 실제보다 작게 추정하지 않는다.
+        assertThat(detector.estimate(7L).getRequests()).isGreaterThanOrEqualTo(500);
+    }
+
+    @DisplayName("기준을 넘은 상품은 한 번만 알리고, 기준 아래로 내려갔다가 다시 넘으면 다시 알린다")
+    @Test
+    void 기준을_넘으면_한_번만_알린다() {
+        // given
+        final HotKeyDetector detector = detector(10, 100);
+        IntStream.range(0, 150).forEach(i -> detector.recordRequest(1L));
+
+        // when
+        detector.detect();
+        detector.detect();
+
+        // then
+        assertThat(events).hasSize(1);
+        final HotProductDetectedEvent event = (HotProductDetectedEvent) events.get(0);
+        assertThat(event.getProductId()).isEqualTo(1L);
+        assertThat(event.getReason()).isEqualTo("requests");
+        assertThat(event.isContentionOnly()).isFalse();
+
+        detector.decay();
+        detector.decay();
+        detector.detect();
+        IntStream.range(0, 100).forEach(i -> detector.recordRequest(1L));
+        detector.detect();
+        assertThat(events).hasSize(2);
+    }
+
+    @DisplayName("요청이 적어도 lock 대기 시간이 긴 상품은 경합 때문에 hot product 로 알린다")
+    @Test
+    void lock_대기가_긴_상품을_알린다() {
+        // given
+        final HotKeyDetector detector = detector(10, 1_000);
+        detector.recordRequest(5L);
+        detector.recordLockWait(5L, TimeUnit.SECONDS.toNanos(6));
+
+        // when
+        detector.detect();
+
+        // then
+        assertThat(events).hasSize(1);
+        final HotProductDetectedEvent event = (HotProductDetectedEvent) events.get(0);
+        assertThat(event.getReason()).isEqualTo("lock-wait");
+        assertThat(event.isContentionOnly()).isTrue();
+        assertThat(event.getProduct().getLockWaitMillis()).isGreaterThanOrEqualTo(6_000);
+    }
+
+    @DisplayName("요청 수 상위 K 개 밖의 상품도 재시도가 많으면 경합 후보로 추적해서 알린다")
+    @Test
+    void 요청_상위_밖의_경합_상품을_알린다() {
+        // given
+        final HotKeyDetector detector = detector(2, 1_000);
+        IntStream.range(0, 500).forEach(i -> detector.recordRequest(1L));
+        IntStream.range(0, 400).forEach(i -> detector.recordRequest(2L));
+        IntStream.range(0, 10).forEach(i -> detector.recordRequest(9L));
+        IntStream.range(0, 250).forEach(i -> detector.recordRetry(9L));
+
+        // when
+        detector.detect();
+
+        // then
+        assertThat(detector.hottest().stream().map(HotProduct::getProductId)).contains(9L);
+        assertThat(events).hasSize(1);
+        final HotProductDetectedEvent event = (HotProductDetectedEvent) events.get(0);
+        assertThat(event.getProductId()).isEqualTo(9L);
+        assertThat(event.getReason()).isEqualTo("retries");
+    }
+}
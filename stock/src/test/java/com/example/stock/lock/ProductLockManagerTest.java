@@ -0,0 +1,99 @@
+package com.example.stock.lock;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductLockManagerTest {
+
+    private final int threadCount = 1000;
+
+    private final ProductLockManager lockManager = new ProductLockManager();
+
+    private final ExecutorService executorService = Executors.newFixedThreadPool(32);
+
+    private long counter;
+
+    @AfterEach
+    void afterEach() {
+        executorService.shutdownNow();
+    }
+
+    @DisplayName("같은 상품은 한 스레드씩 실행된다 - 동시에 1000개 테스트")
+    @Test
+    void 같은_상품은_직렬화된다() throws InterruptedException {
+        // given
+        final CountDownLatch countDownLatch = new CountDownLatch(threadCount);
+
+        // when
+        IntStream.range(0, threadCount).forEach(e -> executorService.submit(() -> {
+                    lockManager.lock(1L);
+                    try {
+                        // lock 이 없으면 읽고 쓰는 사이에 다른 스레드의 증가분이 사라진다.
+                        final long read = counter;
+                        Thread.yield();
+                        counter = read + 1;
+                    } finally {
+                        lockManager.unlock(1L);
+                        countDownLatch.countDown();
+                    }
+                }
+        ));
+
+        countDownLatch.await();
+
+        // then
+        assertThat(counter).isEqualTo(threadCount);
+        assertThat(lockManager.size()).isZero();
+    }
+
+    @DisplayName("다른 상품은 서로 기다리지 않는다")
+    @Test
+    void 다른_상품은_병렬로_실행된다() throws Exception {
+        // given
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Future<?> holder = executorService.submit(() -> {
+            lockManager.lock(1L);
+            try {
+                locked.countDown();
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                lockManager.unlock(1L);
+            }
+            return null;
+        });
+        locked.await();
+
+        // when
+        final Future<Boolean> sameProduct = executorService.submit(() -> tryLockAndUnlock(1L));
+        final Future<Boolean> otherProduct = executorService.submit(() -> tryLockAndUnlock(2L));
+
+        // then
+        assertThat(otherProduct.get()).isTrue();
+        assertThat(sameProduct.get()).isFalse();
+
+        release.countDown();
+        holder.get();
+        assertThat(lockManager.size()).isZero();
+    }
+
+    private boolean tryLockAndUnlock(final Long productId) throws InterruptedException {
+        if (!lockManager.tryLock(productId, 200, TimeUnit.MILLISECONDS)) {
+            return false;
+        }
+        lockManager.unlock(productId);
+        return true;
+    }
+}
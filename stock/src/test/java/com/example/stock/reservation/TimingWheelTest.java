@@ -0,0 +1,54 @@
+package com.example.stock.reservation;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimingWheelTest {
+
+    private final long start = 1_000_000L;
+
+    @DisplayName("만료 시각이 지난 항목만 반환한다")
+    @Test
+    void 만료된_항목만_반환한다() {
+        // given
+        final TimingWheel<Long> wheel = new TimingWheel<>(100, 8, start);
+        wheel.add(1L, start + 150);
+        wheel.add(2L, start + 450);
+
+        // when & then
+        assertThat(wheel.advance(start + 100)).isEmpty();
+        assertThat(wheel.advance(start + 200)).containsExactly(1L);
+        assertThat(wheel.advance(start + 400)).isEmpty();
+        assertThat(wheel.advance(start + 500)).containsExactly(2L);
+    }
+
+    @DisplayName("wheel 한 바퀴보다 먼 만료 시각도 해당 바퀴가 돌아올 때까지 만료시키지 않는다")
+    @Test
+    void 한_바퀴보다_먼_항목은_다음_바퀴에_만료된다() {
+        // given
+        final TimingWheel<Long> wheel = new TimingWheel<>(100, 4, start);
+        wheel.add(1L, start + 950);
+
+        // when & then
+        assertThat(wheel.advance(start + 500)).isEmpty();
+        assertThat(wheel.advance(start + 900)).isEmpty();
+        assertThat(wheel.advance(start + 1_000)).containsExactly(1L);
+    }
+
+    @DisplayName("이미 지난 만료 시각으로 추가된 항목과 오래 밀린 advance 도 한 번에 처리한다")
+    @Test
+    void 밀린_항목을_한_번에_처리한다() {
+        // given
+        final TimingWheel<Long> wheel = new TimingWheel<>(100, 4, start);
+        wheel.advance(start + 1_000);
+        wheel.add(1L, start + 500);
+        wheel.add(2L, start + 1_200);
+        wheel.add(3L, start + 5_000);
+
+        // when & then
+        assertThat(wheel.advance(start + 3_000)).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(wheel.advance(start + 5_100)).containsExactly(3L);
+    }
+}
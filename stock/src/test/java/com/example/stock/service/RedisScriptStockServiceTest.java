@@ -0,0 +1,208 @@
+package com.example.stock.service;
+
+import com.example.stock.domain.Stock;
+import com.example.stock.repository.RedisStockRepository;
+import com.example.stock.repository.StockRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 로컬 Redis 대신 embedded Redis 를 띄워서 Lua 스크립트 기반 감소를 검증한다.
+// 테스트가 sync 시점을 정하도록 주기적인 sync 는 사실상 끈다.
+@SpringBootTest(properties = "stock.redis-script.sync-interval-ms=3600000")
+class RedisScriptStockServiceTest {
+
+    private static final int redisPort = findFreePort();
+
+    private static final RedisServer redisServer = startRedis();
+
+    @Autowired private RedisScriptStockService redisScriptStockService;
+
+    @Autowired private RedisStockRepository redisStockRepository;
+
+    @Autowired private StockRepository stockRepository;
+
+    private final int threadCount = 1000;
+    private final long productId = 1000L;
+    private final long otherProductId = 2000L;
+    private final long quantity = 1L;
+    private final long initQuantity = 1000L;
+
+    private ExecutorService executorService;
+
+    @DynamicPropertySource
+    static void redisProperties(final DynamicPropertyRegistry registry) {
+        registry.add("spring.redis.host", () -> "127.0.0.1");
+        registry.add("spring.redis.port", () -> redisPort);
+    }
+
+    @BeforeEach
+    public void beforeEach() {
+        stockRepository.save(new Stock(productId, initQuantity));
+        redisStockRepository.delete(productId);
+        redisStockRepository.delete(otherProductId);
+        redisStockRepository.completePendingDecreases(redisStockRepository.drainPendingDecreases());
+        redisStockRepository.drainQuarantinedDecreases();
+
+        executorService = Executors.newFixedThreadPool(threadCount);
+    }
+
+    @AfterEach
+    public void afterEach() {
+        executorService.shutdown();
+        stockRepository.deleteAll();
+    }
+
+    @AfterAll
+    static void afterAll() {
+        redisServer.stop();
+    }
+
+    @DisplayName("redis lua script 를 사용한 재고 감소 - 동시에 1000개 테스트")
+    @Test
+    void REDIS_SCRIPT를_사용한_재고_감소() throws InterruptedException {
+        // given
+        final CountDownLatch countDownLatch = new CountDownLatch(threadCount);
+
+        // when
+        IntStream.range(0, threadCount).forEach(e -> executorService.submit(() -> {
+                    try {
+                        redisScriptStockService.decrease(productId, quantity);
+                    } finally {
+                        countDownLatch.countDown();
+                    }
+                }
+        ));
+
+        countDownLatch.await();
+        redisScriptStockService.sync();
+
+        // then
+        assertThat(redisStockRepository.getQuantity(productId)).isZero();
+        final Long afterQuantity = stockRepository.getByProductId(productId).getQuantity();
+        System.out.println("### REDIS SCRIPT 동시성 처리 이후 수량 ###" + afterQuantity);
+        assertThat(afterQuantity).isZero();
+    }
+
+    @DisplayName("redis lua script 를 사용한 재고 감소 - 재고보다 많은 요청은 실패한다")
+    @Test
+    void REDIS_SCRIPT는_재고보다_많이_감소시키지_않는다() throws InterruptedException {
+        // given
+        final int requestCount = threadCount + 100;
+        final CountDownLatch countDownLatch = new CountDownLatch(requestCount);
+        final AtomicInteger failCount = new AtomicInteger();
+
+        // when
+        IntStream.range(0, requestCount).forEach(e -> executorService.submit(() -> {
+                    try {
+                        redisScriptStockService.decrease(productId, quantity);
+                    } catch (IllegalArgumentException ex) {
+                        failCount.incrementAndGet();
+                    } finally {
+                        countDownLatch.countDown();
+                    }
+                }
+        ));
+
+        countDownLatch.await();
+        redisScriptStockService.sync();
+
+        // then
+        assertThat(failCount.get()).isEqualTo(100);
+        assertThat(stockRepository.getByProductId(productId).getQuantity()).isZero();
+    }
+
+    @DisplayName("redis lua script 를 사용한 재고 감소 - DB 에 반영되지 않은 감소분이 있으면 evict 하지 않는다")
+    @Test
+    void REDIS_SCRIPT는_반영되지_않은_감소분이_있으면_evict_하지_않는다() {
+        // given
+        redisScriptStockService.decrease(productId, 10L);
+
+        // when & then: sync 전에는 지우지 않는다.
+        assertThat(redisStockRepository.deleteIfSynced(productId)).isFalse();
+        assertThat(redisStockRepository.getQuantity(productId)).isEqualTo(initQuantity - 10);
+
+        // 반영한 뒤에는 지우고, 다음 감소는 DB 기준으로 다시 적재한다.
+        assertThat(redisScriptStockService.evict(productId)).isTrue();
+        assertThat(redisStockRepository.getQuantity(productId)).isNull();
+        assertThat(stockRepository.getByProductId(productId).getQuantity()).isEqualTo(initQuantity - 10);
+
+        redisScriptStockService.decrease(productId, 1L);
+        assertThat(redisStockRepository.getQuantity(productId)).isEqualTo(initQuantity - 11);
+    }
+
+    @DisplayName("redis lua script 를 사용한 재고 감소 - DB 에 반영할 수 없는 감소분은 격리하고 나머지 상품은 반영한다")
+    @Test
+    void REDIS_SCRIPT는_반영할_수_없는_감소분을_격리한다() {
+        // given
+        stockRepository.save(new Stock(otherProductId, initQuantity));
+        redisScriptStockService.decrease(productId, 10L);
+        redisScriptStockService.decrease(otherProductId, 3L);
+
+        // 다른 경로가 DB 의 재고를 먼저 줄여 버린 상황
+        final Stock stock = stockRepository.getByProductId(productId);
+        stock.decrease(initQuantity - 5);
+        stockRepository.save(stock);
+
+        // when
+        redisScriptStockService.sync();
+
+        // then
+        assertThat(stockRepository.getByProductId(productId).getQuantity()).isEqualTo(5L);
+        assertThat(stockRepository.getByProductId(otherProductId).getQuantity()).isEqualTo(initQuantity - 3);
+        assertThat(redisStockRepository.drainQuarantinedDecreases()).containsEntry(productId, 10L);
+
+        // 다음 sync 에서 다시 시도하지 않는다.
+        redisScriptStockService.sync();
+        assertThat(stockRepository.getByProductId(productId).getQuantity()).isEqualTo(5L);
+    }
+
+    @DisplayName("redis lua script 를 사용한 재고 감소 - 꺼낸 서버가 죽어 남은 inflight 감소분은 timeout 뒤에 다시 반영한다")
+    @Test
+    void REDIS_SCRIPT는_죽은_서버의_inflight_감소분을_되돌린다() {
+        // given - 감소분을 꺼낸 서버가 DB 에 반영하기 전에 죽은 상황
+        redisScriptStockService.decrease(productId, 10L);
+        redisStockRepository.drainPendingDecreases();
+        assertThat(redisScriptStockService.evict(productId)).isFalse();
+
+        // when
+        assertThat(redisStockRepository.reclaimStaleDecreases(0)).isEqualTo(1L);
+        redisScriptStockService.sync();
+
+        // then
+        assertThat(stockRepository.getByProductId(productId).getQuantity()).isEqualTo(initQuantity - 10);
+        assertThat(redisScriptStockService.evict(productId)).isTrue();
+    }
+
+    private static RedisServer startRedis() {
+        final RedisServer server = new RedisServer(redisPort);
+        server.start();
+        return server;
+    }
+
+    private static int findFreePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,26 +1,65 @@
 package com.example.stock.service;
 
+import com.example.stock.adaptive.StockLockMode;
+import com.example.stock.admission.SoldOutRegistry;
+import com.example.stock.cache.StockChangePublisher;
+import com.example.stock.cache.StockChangedEvent;
 import com.example.stock.domain.Stock;
+import com.example.stock.domain.StockBucket;
+import com.example.stock.facade.AdaptiveStockFacade;
+import com.example.stock.facade.CoalescingStockFacade;
 import com.example.stock.facade.LettuceLockStockFacade;
 import com.example.stock.facade.NamedLockStockFacade;
 import com.example.stock.facade.OptimisticLockStockFacade;
+import com.example.stock.facade.OrderStockFacade;
 import com.example.stock.facade.RedissonLockStockFacade;
+import com.example.stock.hotkey.HotKeyDetector;
+import com.example.stock.importer.ImportFormat;
+import com.example.stock.importer.ImportMode;
+import com.example.stock.importer.ImportProgress;
+import com.example.stock.importer.StockImportService;
+import com.example.stock.ledger.StockBalance;
+import com.example.stock.domain.StockMovement;
+import com.example.stock.domain.StockReservation;
+import com.example.stock.lock.LockLease;
+import com.example.stock.lock.StaleLockException;
+import com.example.stock.repository.StockBucketRepository;
+import com.example.stock.repository.StockMovementRepository;
+import com.example.stock.repository.RedisRepository;
+import com.example.stock.repository.StockReservationRepository;
 import com.example.stock.repository.StockRepository;
+import com.example.stock.reservation.ReservationExpiryJob;
+import com.example.stock.reservation.ReservationStateException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
-@SpringBootTest
+// 1000개 동시 요청 테스트가 느린 환경에서도 admission control 의 대기 시간 초과로 버려지지 않게 한다.
+// hot product 감지 테스트가 감소 도중의 decay 로 기준 아래로 내려가지 않게 sketch 를 줄이지 않는다.
+@SpringBootTest(properties = {"stock.admission.wait-timeout-ms=600000", "stock.hot-key.decay-interval-millis=600000"})
 class StockServiceTest {
 
     @Autowired
@@ -37,8 +76,48 @@ class StockServiceTest {
 
     @Autowired private RedissonLockStockFacade redissonLockStockFacade;
 
+    @Autowired private AtomicUpdateStockService atomicUpdateStockService;
+
+    @Autowired private InMemoryStockService inMemoryStockService;
+
+    @Autowired private CoalescingStockFacade coalescingStockFacade;
+
+    @Autowired private PartitionedStockService partitionedStockService;
+
+    @Autowired private ShardedStockService shardedStockService;
+
+    @Autowired private OrderStockFacade orderStockFacade;
+
+    @Autowired private AdaptiveStockFacade adaptiveStockFacade;
+
+    @Autowired private StockReservationService stockReservationService;
+
+    @Autowired private ReservationExpiryJob reservationExpiryJob;
+
+    @Autowired private StockQueryService stockQueryService;
+
+    @Autowired private LedgerStockService ledgerStockService;
+
+    @Autowired private StockMovementRepository stockMovementRepository;
+
+    @Autowired private RedisRepository redisRepository;
+
+    @Autowired private SoldOutRegistry soldOutRegistry;
+
+    @Autowired private StockChangePublisher stockChangePublisher;
+
+    @Autowired private HotKeyDetector hotKeyDetector;
+
+    @Autowired private StockImportService stockImportService;
+
+    @Autowired private StockReservationRepository stockReservationRepository;
+
     @Autowired private StockRepository stockRepository;
 
+    @Autowired private StockBucketRepository stockBucketRepository;
+
+    @Autowired private StringRedisTemplate redisTemplate;
+
     private final int threadCount = 1000;
     private final long productId = 1000L;
     private final long quantity = 1L;
@@ -58,6 +137,12 @@ class StockServiceTest {
     @AfterEach
     public void afterEach() {
         stockRepository.deleteAll();
+        stockBucketRepository.deleteAll();
+        stockReservationRepository.deleteAll();
+        stockMovementRepository.deleteAll();
+        // 카운터 방식이 적재해 둔 잔량을 비워서 다음 테스트의 입고가 카운터로 가지 않게 한다.
+        inMemoryStockService.recover();
+        ledgerStockService.recover();
     }
 
     @DisplayName("SYNCHRONIZED를 사용한 재고 감소 - 동시 1000개 테스트 | 16.994s 소요")
@@ -132,6 +217,15 @@ class StockServiceTest {
         assertThat(afterQuantity).isZero();
     }
 
+    @DisplayName("optimistic lock - 재고 부족은 version 충돌이 아니므로 재시도하지 않고 바로 실패한다")
+    @Test
+    void OPTIMISTIC_LOCK은_재고_부족을_재시도하지_않는다() {
+        assertThatThrownBy(() -> stockOptimisticLockFacade.decrease(productId, initQuantity + 1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Not enough stock");
+        assertThat(stockRepository.getByProductId(productId).getQuantity()).isEqualTo(initQuantity);
+    }
+
     @DisplayName("named lock 을 사용한 재고 감소 - 동시에 1000개 테스트 | 21.857s 소요")
     // 데이터 소스를 분리하지 않고 하나로 사용할 경우 커넥션 풀이 부족해질 수 있으므로 분리하는 것을 추천한다.
     @Test
@@ -207,4 +301,797 @@ class StockServiceTest {
         System.out.println("### REDDISON LOCK 동시성 처리 이후 수량 ###" + afterQuantity);
         assertThat(afterQuantity).isZero();
     }
-}
\ No newline at end of file
+
+    @DisplayName("in-memory CAS 카운터를 사용한 재고 감소 - 동시에 1000개 테스트")
+    // DB round trip 없이 메모리에서 감소시키고, flush 시점에 한 번에 DB에 반영한다.
+    @Test
+    void IN_MEMORY_카운터를_사용한_재고_감소() throws InterruptedException {
+        // given
+        inMemoryStockService.recover();
+
+        // when
+        IntStream.range(0, threadCount).forEach(e -> executorService.submit(() -> {
+                    try {
+                        inMemoryStockService.decrease(productId, quantity);
+                    } finally {
+                        countDownLatch.countDown();
+                    }
+                }
+        ));
+
+        countDownLatch.await();
+        inMemoryStockService.flush();
+
+        // then
+        final Long afterQuantity = stockRepository.getByProductId(productId).getQuantity();
+        System.out.println("### IN-MEMORY 동시성 처리 이후 수량 ###" + afterQuantity);
+        assertThat(afterQuantity).isZero();
+        assertThat(inMemoryStockService.getQuantity(productId)).isZero();
+    }
+
+    @DisplayName("in-memory CAS 카운터를 사용한 재고 감소 - DB 에 반영할 수 없는 감소분은 격리하고 나머지 상품은 반영한다")
+    @Test
+    void IN_MEMORY_카운터는_반영할_수_없는_감소분을_격리한다() {
+        // given
+        final long otherProductId = 2000L;
+        stockRepository.save(new Stock(otherProductId, initQuantity));
+        inMemoryStockService.recover();
+
+        // 다른 경로가 DB 의 재고를 먼저 줄여 버린 상황
+        final Stock stock = stockRepository.getByProductId(productId);
+        stock.decrease(initQuantity - 5);
+        stockRepository.save(stock);
+
+        // when
+        inMemoryStockService.decrease(productId, 10L);
+        inMemoryStockService.decrease(otherProductId, 3L);
+        inMemoryStockService.flush();
+
+        // then
+        assertThat(inMemoryStockService.getQuarantinedDecreases()).containsEntry(productId, 10L);
+        assertThat(stockRepository.getByProductId(productId).getQuantity()).isEqualTo(5L);
+        assertThat(stockRepository.getByProductId(otherProductId).getQuantity()).isEqualTo(initQuantity - 3);
+        assertThat(inMemoryStockService.getQuantity(productId)).isEqualTo(5L);
+    }
+
+    @DisplayName("요청 병합(group commit)을 사용한 재고 감소 - 동시에 1000개 테스트")
+    // 같은 상품의 요청을 모아 한 번의 row lock 과 UPDATE 로 처리한다.
+    @Test
+    void COALESCING을_사용한_재고_감소() throws InterruptedException {
+        // given
+
+        // when
+        IntStream.range(0, threadCount).forEach(e -> executorService.submit(() -> {
+                    try {
+                        coalescingStockFacade.decrease(productId, quantity);
+                    } catch (InterruptedException ex) {
+                        throw new RuntimeException(ex);
+                    } finally {
+                        countDownLatch.countDown();
+                    }
+                }
+        ));
+
+        countDownLatch.await();
+
+        // then
+        final Long afterQuantity = stockRepository.getByProductId(productId).getQuantity();
+        System.out.println("### COALESCING 동시성 처리 이후 수량 ###" + afterQuantity);
+        assertThat(afterQuantity).isZero();
+        assertThat(coalescingStockFacade.size()).isZero();
+    }
+
+    @DisplayName("조건부 UPDATE 를 사용한 재고 감소 - 동시에 1000개 테스트")
+    // 조회 없이 update ... where quantity >= ? 한 문장으로 감소시키고 반영된 row 수로 성공 여부를 판단한다.
+    @Test
+    void ATOMIC_UPDATE를_사용한_재고_감소() throws InterruptedException {
+        // given
+
+        // when
+        IntStream.range(0, threadCount).forEach(e -> executorService.submit(() -> {
+                    try {
+                        atomicUpdateStockService.decrease(productId, quantity);
+                    } finally {
+                        countDownLatch.countDown();
+                    }
+                }
+        ));
+
+        countDownLatch.await();
+
+        // then
+        final Long afterQuantity = stockRepository.getByProductId(productId).getQuantity();
+        System.out.println("### ATOMIC UPDATE 동시성 처리 이후 수량 ###" + afterQuantity);
+        assertThat(afterQuantity).isZero();
+        assertThatThrownBy(() -> atomicUpdateStockService.decrease(productId, quantity))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Not enough stock");
+    }
+
+    @DisplayName("조건부 UPDATE 를 사용한 재고 감소 - 재고보다 많은 요청이 와도 음수가 되지 않는다")
+    @Test
+    void ATOMIC_UPDATE는_재고보다_많이_감소시키지_않는다() throws InterruptedException {
+        // given
+        final int overRequestCount = threadCount + 100;
+        final CountDownLatch overRequestLatch = new CountDownLatch(overRequestCount);
+        final AtomicInteger failCount = new AtomicInteger();
+
+        // when
+        IntStream.range(0, overRequestCount).forEach(e -> executorService.submit(() -> {
+                    try {
+                        atomicUpdateStockService.decrease(productId, quantity);
+                    } catch (IllegalArgumentException ex) {
+                        failCount.incrementAndGet();
+                    } finally {
+                        overRequestLatch.countDown();
+                    }
+                }
+        ));
+
+        overRequestLatch.await();
+
+        // then
+        final Long afterQuantity = stockRepository.getByProductId(productId).getQuantity();
+        assertThat(afterQuantity).isZero();
+        assertThat(failCount.get()).isEqualTo(100);
+    }
+
+    @DisplayName("상품별 단일 스레드 partition 을 사용한 비동기 재고 감소 - 동시에 1000개 테스트")
+    // 요청 스레드 없이 1000개의 요청을 넣고 CompletableFuture 로 결과를 기다린다.
+    @Test
+    void PARTITION을_사용한_비동기_재고_감소() {
+        // given
+
+        // when
+        final List<CompletableFuture<Long>> futures = IntStream.range(0, threadCount)
+                .mapToObj(e -> partitionedStockService.decreaseAsync(productId, quantity))
+                .collect(Collectors.toList());
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        // then
+        final Long afterQuantity = stockRepository.getByProductId(productId).getQuantity();
+        System.out.println("### PARTITION 동시성 처리 이후 수량 ###" + afterQuantity);
+        assertThat(afterQuantity).isZero();
+    }
+
+    @DisplayName("재고를 여러 bucket row 로 나눈 재고 감소 - 동시에 1000개 테스트")
+    // bucket 하나만 잠그므로 같은 상품이라도 bucket 수만큼 동시에 감소시킬 수 있다.
+    @Test
+    void SHARDING을_사용한_재고_감소() throws InterruptedException {
+        // given
+        shardedStockService.shard(productId, 8);
+
+        // when
+        IntStream.range(0, threadCount).forEach(e -> executorService.submit(() -> {
+                    try {
+                        shardedStockService.decrease(productId, quantity);
+                    } finally {
+                        countDownLatch.countDown();
+                    }
+                }
+        ));
+
+        countDownLatch.await();
+
+        // then
+        final Long afterQuantity = shardedStockService.getQuantity(productId);
+        System.out.println("### SHARDING 동시성 처리 이후 수량 ###" + afterQuantity);
+        assertThat(afterQuantity).isZero();
+        assertThat(stockBucketRepository.findAllByProductIdOrderByBucketNo(productId))
+                .hasSize(8)
+                .allMatch(bucket -> bucket.getQuantity() == 0L);
+    }
+
+    @DisplayName("재고를 여러 bucket row 로 나눈 재고 감소 - bucket 하나보다 많은 수량은 재분배해서 감소시킨다")
+    @Test
+    void SHARDING은_bucket_하나보다_많은_수량을_재분배해서_감소시킨다() {
+        // given
+        shardedStockService.shard(productId, 4);
+
+        // when
+        shardedStockService.decrease(productId, 600L);
+
+        // then
+        assertThat(shardedStockService.getQuantity(productId)).isEqualTo(400L);
+        assertThat(stockBucketRepository.findAllByProductIdOrderByBucketNo(productId))
+                .extracting(bucket -> bucket.getQuantity())
+                .containsExactly(100L, 100L, 100L, 100L);
+        assertThatThrownBy(() -> shardedStockService.decrease(productId, 401L))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Not enough stock");
+
+        shardedStockService.unshard(productId);
+        assertThat(stockRepository.getByProductId(productId).getQuantity()).isEqualTo(400L);
+    }
+
+    @DisplayName("재고를 여러 bucket row 로 나눈 재고 감소 - shard 전에 본 상품도, 다른 서버가 unshard 한 상품도 감소시킨다")
+    @Test
+    void SHARDING은_bucket_수를_잘못_기억해도_감소시킨다() {
+        // given: shard 전에는 Stock row 에서 감소시키고, 그 결과(0개)를 기억하지 않는다.
+        shardedStockService.decrease(productId, quantity);
+        shardedStockService.shard(productId, 4);
+        shardedStockService.decrease(productId, quantity);
+        assertThat(stockBucketRepository.findAllByProductIdOrderByBucketNo(productId)
+                .stream().mapToLong(StockBucket::getQuantity).sum()).isEqualTo(initQuantity - 2);
+
+        // when: 다른 서버가 unshard 한 상황 (이 서버의 bucket 수 캐시는 4 로 남아 있다)
+        final List<StockBucket> buckets = stockBucketRepository.findAllByProductIdOrderByBucketNo(productId);
+        final Stock stock = stockRepository.getByProductId(productId);
+        stock.increase(buckets.stream().mapToLong(StockBucket::getQuantity).sum());
+        stockRepository.save(stock);
+        stockBucketRepository.deleteAll(buckets);
+
+        shardedStockService.decrease(productId, 10L);
+
+        // then
+        assertThat(stockRepository.getByProductId(productId).getQuantity()).isEqualTo(initQuantity - 12);
+    }
+
+    @DisplayName("재고를 여러 bucket row 로 나눈 재고 감소 - 감소 도중에 shard 해도 남은 재고가 있으면 실패하지 않는다")
+    @Test
+    void SHARDING은_감소_도중_shard_해도_실패하지_않는다() throws InterruptedException {
+        // given
+        final AtomicInteger failures = new AtomicInteger();
+
+        // when: Stock row 에서 감소시키던 요청들 사이에 shard 가 끼어든다.
+        IntStream.range(0, threadCount).forEach(e -> executorService.submit(() -> {
+                    try {
+                        if (e == threadCount / 10) {
+                            shardedStockService.shard(productId, 4);
+                        }
+                        shardedStockService.decrease(productId, quantity);
+                    } catch (IllegalArgumentException ex) {
+                        failures.incrementAndGet();
+                    } finally {
+                        countDownLatch.countDown();
+                    }
+                }
+        ));
+
+        countDownLatch.await();
+
+        // then
+        assertThat(failures.get()).isZero();
+        assertThat(shardedStockService.getQuantity(productId)).isZero();
+    }
+
+    @DisplayName("여러 상품을 담은 주문의 재고 감소 - 상품 순서가 다른 주문 1000개를 동시에 처리해도 deadlock 이 나지 않는다")
+    @Test
+    void 주문_단위_재고_감소는_deadlock_없이_처리된다() throws InterruptedException {
+        // given
+        final long otherProductId = 2000L;
+        stockRepository.save(new Stock(otherProductId, initQuantity));
+
+        // when
+        IntStream.range(0, threadCount).forEach(e -> executorService.submit(() -> {
+                    final Map<Long, Long> quantities = new LinkedHashMap<>();
+                    if (e % 2 == 0) {
+                        quantities.put(productId, quantity);
+                        quantities.put(otherProductId, quantity);
+                    } else {
+                        quantities.put(otherProductId, quantity);
+                        quantities.put(productId, quantity);
+                    }
+
+                    try {
+                        orderStockFacade.decrease(quantities, OrderStockFacade.LockMode.PESSIMISTIC);
+                    } catch (InterruptedException ex) {
+                        throw new RuntimeException(ex);
+                    } finally {
+                        countDownLatch.countDown();
+                    }
+                }
+        ));
+
+        countDownLatch.await();
+
+        // then
+        assertThat(stockRepository.getByProductId(productId).getQuantity()).isZero();
+        assertThat(stockRepository.getByProductId(otherProductId).getQuantity()).isZero();
+    }
+
+    @DisplayName("여러 상품을 담은 주문의 재고 감소 - Redisson 분산 lock 으로 상품 순서가 다른 주문 1000개를 동시에 처리한다")
+    @Test
+    void 주문_단위_재고_감소는_redisson_lock_으로도_처리된다() throws InterruptedException {
+        // given
+        final long otherProductId = 2000L;
+        stockRepository.save(new Stock(otherProductId, initQuantity));
+
+        // when
+        IntStream.range(0, threadCount).forEach(e -> executorService.submit(() -> {
+                    final Map<Long, Long> quantities = new LinkedHashMap<>();
+                    if (e % 2 == 0) {
+                        quantities.put(productId, quantity);
+                        quantities.put(otherProductId, quantity);
+                    } else {
+                        quantities.put(otherProductId, quantity);
+                        quantities.put(productId, quantity);
+                    }
+
+                    try {
+                        orderStockFacade.decrease(quantities, OrderStockFacade.LockMode.REDISSON);
+                    } catch (InterruptedException ex) {
+                        throw new RuntimeException(ex);
+                    } finally {
+                        countDownLatch.countDown();
+                    }
+                }
+        ));
+
+        countDownLatch.await();
+
+        // then
+        assertThat(stockRepository.getByProductId(productId).getQuantity()).isZero();
+        assertThat(stockRepository.getByProductId(otherProductId).getQuantity()).isZero();
+    }
+
+    @DisplayName("여러 상품을 담은 주문의 재고 감소 - 하나라도 부족하면 주문 전체가 반영되지 않는다")
+    @Test
+    void 주문_단위_재고_감소는_all_or_nothing_이다() {
+        // given
+        final long otherProductId = 2000L;
+        stockRepository.save(new Stock(otherProductId, 1L));
+
+        final Map<Long, Long> quantities = new LinkedHashMap<>();
+        quantities.put(productId, quantity);
+        quantities.put(otherProductId, 2L);
+
+        // when & then
+        assertThatThrownBy(() -> orderStockFacade.decrease(quantities, OrderStockFacade.LockMode.PESSIMISTIC))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Not enough stock");
+        assertThat(stockRepository.getByProductId(productId).getQuantity()).isEqualTo(initQuantity);
+        assertThat(stockRepository.getByProductId(otherProductId).getQuantity()).isEqualTo(1L);
+    }
+
+    @DisplayName("예약(reservation)을 사용한 재고 선점 - 동시에 1000개 테스트")
+    @Test
+    void RESERVATION을_사용한_재고_선점() throws InterruptedException {
+        // given
+
+        // when
+        IntStream.range(0, threadCount).forEach(e -> executorService.submit(() -> {
+                    try {
+                        stockReservationService.reserve(productId, quantity, Duration.ofMinutes(10));
+                    } finally {
+                        countDownLatch.countDown();
+                    }
+                }
+        ));
+
+        countDownLatch.await();
+
+        // then
+        final Stock stock = stockRepository.getByProductId(productId);
+        assertThat(stock.getQuantity()).isZero();
+        assertThat(stock.getReserved()).isEqualTo(initQuantity);
+    }
+
+    @DisplayName("예약(reservation)을 사용한 재고 선점 - confirm 은 확정하고 release 는 되돌린다")
+    @Test
+    void RESERVATION은_confirm_과_release_로_처리된다() {
+        // given
+        final StockReservation confirmed = stockReservationService.reserve(productId, 10L, Duration.ofMinutes(10));
+        final StockReservation released = stockReservationService.reserve(productId, 20L, Duration.ofMinutes(10));
+
+        // when
+        stockReservationService.confirm(confirmed.getId());
+        stockReservationService.release(released.getId());
+
+        // then
+        final Stock stock = stockRepository.getByProductId(productId);
+        assertThat(stock.getQuantity()).isEqualTo(initQuantity - 10L);
+        assertThat(stock.getReserved()).isZero();
+        assertThatThrownBy(() -> stockReservationService.release(confirmed.getId()))
+                .isInstanceOf(ReservationStateException.class)
+                .hasMessage("Reservation is already CONFIRMED");
+    }
+
+    @DisplayName("예약(reservation)을 사용한 재고 선점 - 재고 row 가 없어진 상품의 예약도 만료시킨다")
+    @Test
+    void RESERVATION은_재고가_없어져도_만료된다() {
+        // given
+        final StockReservation reservation = stockReservationService.reserve(productId, 10L, Duration.ofMinutes(10));
+        stockRepository.deleteAll();
+
+        // when
+        final int expired = stockReservationService.expire(Collections.singletonList(reservation.getId()));
+
+        // then
+        assertThat(expired).isEqualTo(1);
+        assertThat(stockReservationRepository.findAllByStatus(StockReservation.Status.EXPIRED)).hasSize(1);
+    }
+
+    @DisplayName("예약(reservation)을 사용한 재고 선점 - TTL 이 지나면 timing wheel 이 예약을 되돌린다")
+    @Test
+    void RESERVATION은_TTL이_지나면_만료된다() throws InterruptedException {
+        // given
+        IntStream.range(0, 100).forEach(e ->
+                stockReservationService.reserve(productId, quantity, Duration.ofMillis(200)));
+        assertThat(stockRepository.getByProductId(productId).getQuantity()).isEqualTo(initQuantity - 100);
+
+        // when
+        final long deadline = System.currentTimeMillis() + 5_000;
+        while (stockRepository.getByProductId(productId).getReserved() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+
+        // then
+        final Stock stock = stockRepository.getByProductId(productId);
+        assertThat(stock.getQuantity()).isEqualTo(initQuantity);
+        assertThat(stock.getReserved()).isZero();
+        assertThat(stockReservationRepository.findAllByStatus(StockReservation.Status.EXPIRED)).hasSize(100);
+    }
+
+    @DisplayName("예약(reservation)을 사용한 재고 선점 - wheel 에 없는 만료 예약(죽은 서버의 예약)은 DB sweep 이 되돌린다")
+    @Test
+    void RESERVATION은_죽은_서버의_예약도_만료된다() {
+        // given
+        final Stock stock = stockRepository.getByProductId(productId);
+        stock.reserve(10L);
+        stockRepository.saveAndFlush(stock);
+        stockReservationRepository.saveAndFlush(new StockReservation(productId, 10L, Instant.now().minus(Duration.ofMinutes(1))));
+
+        // when
+        reservationExpiryJob.sweep();
+
+        // then
+        final Stock swept = stockRepository.getByProductId(productId);
+        assertThat(swept.getQuantity()).isEqualTo(initQuantity);
+        assertThat(swept.getReserved()).isZero();
+        assertThat(stockReservationRepository.findAllByStatus(StockReservation.Status.EXPIRED)).hasSize(1);
+    }
+
+    @DisplayName("경합 정도에 따라 lock 전략을 고르는 재고 감소 - 동시에 1000개 테스트")
+    // optimistic 충돌이 나면 재시도하지 않고 pessimistic 으로 처리하고, 경합이 계속되면 상품의 모드를 올린다.
+    @Test
+    void ADAPTIVE를_사용한_재고_감소() throws InterruptedException {
+        // given
+
+        // when
+        IntStream.range(0, threadCount).forEach(e -> executorService.submit(() -> {
+                    try {
+                        adaptiveStockFacade.decrease(productId, quantity);
+                    } catch (InterruptedException ex) {
+                        throw new RuntimeException(ex);
+                    } finally {
+                        countDownLatch.countDown();
+                    }
+                }
+        ));
+
+        countDownLatch.await();
+
+        // then
+        final Long afterQuantity = stockRepository.getByProductId(productId).getQuantity();
+        System.out.println("### ADAPTIVE 동시성 처리 이후 수량 ###" + afterQuantity);
+        System.out.println("### ADAPTIVE 상태 ###" + adaptiveStockFacade.describe(productId));
+        assertThat(afterQuantity).isZero();
+        assertThat(adaptiveStockFacade.describe(productId)).containsKeys("mode", "conflictRate", "averageConcurrency");
+    }
+
+    @DisplayName("near cache 를 사용한 재고 조회 - 감소 경로가 캐시를 갱신하고, 품절은 캐시에서 응답한다")
+    @Test
+    void 캐시를_사용한_재고_조회() throws InterruptedException {
+        // given
+        assertThat(stockQueryService.getQuantity(productId)).isEqualTo(initQuantity);
+
+        // when
+        IntStream.range(0, threadCount).forEach(e -> executorService.submit(() -> {
+                    try {
+                        atomicUpdateStockService.decrease(productId, quantity);
+                    } finally {
+                        countDownLatch.countDown();
+                    }
+                }
+        ));
+
+        countDownLatch.await();
+
+        // then
+        assertThat(stockQueryService.getQuantity(productId)).isZero();
+        assertThat(stockQueryService.isSoldOut(productId)).isTrue();
+        assertThat(stockQueryService.isAvailable(productId, quantity)).isFalse();
+    }
+
+    @DisplayName("near cache 를 사용한 재고 조회 - 다른 서버에서 늦게 도착한 품절 메시지는 값으로 쓰지 않는다")
+    @Test
+    void 다른_서버의_품절_메시지는_캐시를_지우기만_한다() {
+        // given
+        assertThat(stockQueryService.getQuantity(productId)).isEqualTo(initQuantity);
+
+        // when
+        stockQueryService.onStockChanged(new StockChangedEvent(productId, 0L, true));
+
+        // then
+        assertThat(stockQueryService.getQuantity(productId)).isEqualTo(initQuantity);
+        assertThat(stockQueryService.isSoldOut(productId)).isFalse();
+    }
+
+    @DisplayName("near cache 를 사용한 재고 조회 - 입고보다 늦게 알려진 카운터의 품절은 캐시에 남지 않는다")
+    @Test
+    void 입고보다_늦게_알려진_품절은_캐시에_남지_않는다() {
+        // given - 감소가 0 을 계산한 뒤, 그보다 나중의 입고가 먼저 알려진 경우
+        final long otherProductId = 3001L;
+        final long soldOutVersion = StockBalance.initialVersion();
+
+        // when
+        stockChangePublisher.changed(otherProductId, new StockBalance(5L, soldOutVersion + 1));
+        stockChangePublisher.changed(otherProductId, new StockBalance(0L, soldOutVersion));
+
+        // then
+        assertThat(stockQueryService.getQuantity(otherProductId)).isEqualTo(5L);
+        assertThat(stockQueryService.isSoldOut(otherProductId)).isFalse();
+        stockQueryService.onStockChanged(new StockChangedEvent(otherProductId, null, false));
+    }
+
+    @DisplayName("insert 만 하는 movement ledger 를 사용한 재고 감소 - 동시에 1000개 테스트")
+    @Test
+    void LEDGER를_사용한_재고_감소() throws InterruptedException {
+        // given
+        ledgerStockService.recover();
+
+        // when
+        IntStream.range(0, threadCount).forEach(e -> executorService.submit(() -> {
+                    try {
+                        ledgerStockService.decrease(productId, quantity);
+                    } finally {
+                        countDownLatch.countDown();
+                    }
+                }
+        ));
+
+        countDownLatch.await();
+        ledgerStockService.compact();
+
+        // then
+        final Long afterQuantity = stockRepository.getByProductId(productId).getQuantity();
+        System.out.println("### LEDGER 동시성 처리 이후 수량 ###" + afterQuantity);
+        assertThat(afterQuantity).isZero();
+        assertThat(ledgerStockService.getQuantity(productId)).isZero();
+        assertThat(stockMovementRepository.findAllByProductIdOrderById(productId))
+                .hasSize(threadCount)
+                .allMatch(movement -> movement.getType() == StockMovement.Type.DECREASE && movement.isCompacted());
+        assertThatThrownBy(() -> ledgerStockService.decrease(productId, quantity))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @DisplayName("redis lock lease - 소유자만 해제할 수 있고, 지난 fencing token 의 쓰기는 거절된다")
+    @Test
+    void 지난_fencing_token_의_쓰기는_거절된다() {
+        // given
+        final LockLease stale = fencedLock();
+        final LockLease forged = new LockLease(stale.getKey(), "not-owner", stale.getFencingToken());
+
+        // when
+        final boolean releasedByOther = redisRepository.unlock(forged);
+        redisRepository.unlock(stale);
+        final LockLease current = fencedLock();
+        atomicUpdateStockService.decreaseFenced(productId, quantity, current.getFencingToken());
+        redisRepository.unlock(current);
+
+        // then
+        assertThat(releasedByOther).isFalse();
+        assertThat(current.getFencingToken()).isGreaterThan(stale.getFencingToken());
+        assertThatThrownBy(() -> atomicUpdateStockService.decreaseFenced(productId, quantity, stale.getFencingToken()))
+                .isInstanceOf(StaleLockException.class);
+        assertThat(stockRepository.getByProductId(productId).getQuantity()).isEqualTo(initQuantity - quantity);
+    }
+
+    @DisplayName("redis lock lease - Redis 의 fencing token 번호를 잃어도 DB 에 반영된 token 보다 큰 값을 발급한다")
+    @Test
+    void fencing_token_번호를_잃어도_DB_의_token_부터_다시_센다() throws InterruptedException {
+        // given
+        final String fenceKey = "lock-fence:" + redisRepository.generateKey(productId);
+        lettuceLockStockFacade.decrease(productId, quantity);
+        final long before = Long.parseLong(redisTemplate.opsForValue().get(fenceKey));
+
+        // when
+        redisTemplate.delete(fenceKey);
+        lettuceLockStockFacade.decrease(productId, quantity);
+
+        // then
+        assertThat(Long.parseLong(redisTemplate.opsForValue().get(fenceKey))).isGreaterThan(before);
+        assertThat(stockRepository.getByProductId(productId).getQuantity()).isEqualTo(initQuantity - 2 * quantity);
+    }
+
+    @DisplayName("품절된 상품은 lock 없이 바로 거절하고, 재입고되면 다시 감소시킬 수 있다")
+    @Test
+    void 품절된_상품은_바로_거절된다() throws InterruptedException {
+        // given
+        IntStream.range(0, threadCount).forEach(e -> executorService.submit(() -> {
+                    try {
+                        pessimisticLockStockService.decrease(productId, quantity);
+                    } finally {
+                        countDownLatch.countDown();
+                    }
+                }
+        ));
+        countDownLatch.await();
+
+        // when
+        assertThatThrownBy(() -> pessimisticLockStockService.decrease(productId, quantity))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Not enough stock");
+
+        // then
+        assertThat(soldOutRegistry.isSoldOut(productId)).isTrue();
+        assertThatThrownBy(() -> namedLockStockFacade.decrease(productId, quantity))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Not enough stock");
+
+        final Stock stock = stockRepository.getByProductId(productId);
+        stock.increase(10L);
+        stockRepository.save(stock);
+
+        assertThat(soldOutRegistry.isSoldOut(productId)).isFalse();
+        pessimisticLockStockService.decrease(productId, quantity);
+        assertThat(stockRepository.getByProductId(productId).getQuantity()).isEqualTo(9L);
+    }
+
+    @DisplayName("품절 상품 빠른 거절 - 다른 서버의 품절 메시지는 DB 에서 품절일 때만 표시한다")
+    @Test
+    void 다른_서버의_품절_메시지는_DB_로_확인한_뒤에_표시한다() {
+        // given - 재입고 뒤에 늦게 도착한 품절 메시지
+        soldOutRegistry.onStockChanged(new StockChangedEvent(productId, 0L, true));
+        assertThat(soldOutRegistry.isSoldOut(productId)).isFalse();
+
+        // when
+        final Stock stock = stockRepository.getByProductId(productId);
+        stock.decrease(initQuantity);
+        stockRepository.save(stock);
+        soldOutRegistry.onStockChanged(new StockChangedEvent(productId, 0L, true));
+
+        // then
+        assertThat(soldOutRegistry.isSoldOut(productId)).isTrue();
+    }
+
+    @DisplayName("품절 상품 빠른 거절 - 입고보다 늦게 알려진 카운터의 품절은 표시하지 않는다")
+    @Test
+    void 입고보다_늦게_알려진_품절은_표시하지_않는다() {
+        // given - 감소가 0 을 계산한 뒤, 그보다 나중의 입고가 먼저 알려진 경우
+        final long otherProductId = 3000L;
+        final long soldOutVersion = StockBalance.initialVersion();
+
+        // when
+        stockChangePublisher.changed(otherProductId, new StockBalance(5L, soldOutVersion + 1));
+        stockChangePublisher.changed(otherProductId, new StockBalance(0L, soldOutVersion));
+
+        // then
+        assertThat(soldOutRegistry.isSoldOut(otherProductId)).isFalse();
+        stockChangePublisher.changed(otherProductId, new StockBalance(0L, soldOutVersion + 2));
+        assertThat(soldOutRegistry.isSoldOut(otherProductId)).isTrue();
+        soldOutRegistry.clear(otherProductId);
+    }
+
+    @DisplayName("CSV 피드 입고 - 판매 중인 상품에 동시에 1000개 감소와 1000줄 입고를 반영한다")
+    @Test
+    void 판매_중에_CSV_피드로_입고한다() throws InterruptedException {
+        // given
+        final long newProductId = 2000L;
+        final StringBuilder feed = new StringBuilder("productId,quantity\n");
+        IntStream.range(0, threadCount).forEach(e -> feed.append(productId).append(",1\n"));
+        feed.append("broken-line\n");
+        feed.append(newProductId).append(",5\n");
+
+        // when
+        IntStream.range(0, threadCount).forEach(e -> executorService.submit(() -> {
+                    try {
+                        pessimisticLockStockService.decrease(productId, quantity);
+                    } finally {
+                        countDownLatch.countDown();
+                    }
+                }
+        ));
+        final ImportProgress progress = stockImportService.importFeed(
+                new ByteArrayInputStream(feed.toString().getBytes(StandardCharsets.UTF_8)), ImportFormat.CSV, ImportMode.RESTOCK);
+
+        countDownLatch.await();
+
+        // then
+        assertThat(progress.getImported()).isEqualTo(threadCount + 1);
+        assertThat(progress.getRejected()).isEqualTo(1);
+        assertThat(stockRepository.getByProductId(productId).getQuantity()).isEqualTo(initQuantity);
+        assertThat(stockRepository.getByProductId(newProductId).getQuantity()).isEqualTo(5L);
+    }
+
+    @DisplayName("CSV 피드 입고 - in-memory 카운터에 적재된 상품은 카운터로 입고하고, replace 는 거절한다")
+    @Test
+    void 카운터에_적재된_상품은_카운터로_입고한다() {
+        // given
+        inMemoryStockService.decrease(productId, 10L);
+
+        // when
+        final ImportProgress restocked = stockImportService.importFeed(
+                new ByteArrayInputStream((productId + ",5\n").getBytes(StandardCharsets.UTF_8)), ImportFormat.CSV, ImportMode.RESTOCK);
+        final ImportProgress replaced = stockImportService.importFeed(
+                new ByteArrayInputStream((productId + ",1\n").getBytes(StandardCharsets.UTF_8)), ImportFormat.CSV, ImportMode.REPLACE);
+        inMemoryStockService.flush();
+
+        // then
+        assertThat(restocked.getImported()).isEqualTo(1);
+        assertThat(replaced.getRejected()).isEqualTo(1);
+        assertThat(inMemoryStockService.getQuantity(productId)).isEqualTo(initQuantity - 10 + 5);
+        assertThat(stockRepository.getByProductId(productId).getQuantity()).isEqualTo(initQuantity - 10 + 5);
+    }
+
+    @DisplayName("CSV 피드 replace - bucket 으로 나뉜 상품과 compaction 되지 않은 movement 가 있는 상품은 거절한다")
+    @Test
+    void 잔량이_Stock_밖에도_있는_상품은_replace_를_거절한다() {
+        // given
+        final long otherProductId = 2000L;
+        stockRepository.save(new Stock(otherProductId, initQuantity));
+        shardedStockService.shard(productId, 4);
+        ledgerStockService.decrease(otherProductId, 10L);
+        ledgerStockService.recover();
+
+        // when
+        final ImportProgress replaced = stockImportService.importFeed(
+                new ByteArrayInputStream((productId + ",1\n" + otherProductId + ",1\n").getBytes(StandardCharsets.UTF_8)),
+                ImportFormat.CSV, ImportMode.REPLACE);
+
+        // then
+        assertThat(replaced.getImported()).isZero();
+        assertThat(replaced.getRejected()).isEqualTo(2);
+        assertThat(shardedStockService.getQuantity(productId)).isEqualTo(initQuantity);
+        assertThat(ledgerStockService.getQuantity(otherProductId)).isEqualTo(initQuantity - 10);
+    }
+
+    @DisplayName("CSV 피드 replace - 예약된 수량을 뺀 만큼만 판매 가능한 수량으로 둔다")
+    @Test
+    void replace_는_예약분을_뺀_수량으로_둔다() {
+        // given
+        stockReservationService.reserve(productId, 30L, Duration.ofMinutes(10));
+
+        // when
+        stockImportService.importFeed(
+                new ByteArrayInputStream((productId + ",100\n").getBytes(StandardCharsets.UTF_8)), ImportFormat.CSV, ImportMode.REPLACE);
+        final Stock replaced = stockRepository.getByProductId(productId);
+        stockImportService.importFeed(
+                new ByteArrayInputStream((productId + ",10\n").getBytes(StandardCharsets.UTF_8)), ImportFormat.CSV, ImportMode.REPLACE);
+
+        // then
+        assertThat(replaced.getQuantity()).isEqualTo(70L);
+        assertThat(replaced.getReserved()).isEqualTo(30L);
+        assertThat(stockRepository.getByProductId(productId).getQuantity()).isZero();
+    }
+
+    @DisplayName("hot product 감지 - 동시에 1000개 감소가 몰린 상품을 상위에 올리고, adaptive facade 가 모드를 올린다")
+    @Test
+    void HOT_PRODUCT를_감지한다() throws InterruptedException {
+        // given
+
+        // when
+        IntStream.range(0, threadCount).forEach(e -> executorService.submit(() -> {
+                    try {
+                        pessimisticLockStockService.decrease(productId, quantity);
+                    } finally {
+                        countDownLatch.countDown();
+                    }
+                }
+        ));
+        countDownLatch.await();
+
+        // then
+        assertThat(hotKeyDetector.hottest()).isNotEmpty();
+        assertThat(hotKeyDetector.hottest().get(0).getProductId()).isEqualTo(productId);
+        assertThat(hotKeyDetector.estimate(productId).getRequests()).isGreaterThanOrEqualTo(threadCount);
+
+        // 주기적으로 도는 detect 가 이벤트를 보내면 adaptive facade 가 받아서 모드를 올린다.
+        final long deadline = System.currentTimeMillis() + 5_000;
+        while (adaptiveStockFacade.modeOf(productId) != StockLockMode.COALESCING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertThat(adaptiveStockFacade.modeOf(productId)).isEqualTo(StockLockMode.COALESCING);
+    }
+
+    // Redis 에 fencing token 번호가 없으면 LettuceLockStockFacade 처럼 DB 의 token 부터 다시 발급받는다.
+    private LockLease fencedLock() {
+        final LockLease lease = redisRepository.lock(productId);
+        if (lease.isFenced()) {
+            return lease;
+        }
+        return redisRepository.issueFencingToken(lease, atomicUpdateStockService.findFencingToken(productId));
+    }
+}